@@ -1,22 +1,32 @@
 package ascii_art;
 
+import image.BrightnessPyramid;
 import image.Image;
 import image.ImageUtilities;
+import image.IntegralImage;
 import image_char_matching.SubImgCharMatcher;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
-
-import java.util.List;
-
 /**
  * Class representing the ASCII Art Algorithm.
  */
 public class AsciiArtAlgorithm {
 
+    /**
+     * Margin added around the brightness range of a quadtree block.
+     */
+    private static final double PYRAMID_EPSILON = 1e-6;
+
     Parameters parameters;
 
+    /**
+     * The quantized color of every tile of the last run, or null if colors were not computed.
+     */
+    private int[][] colors;
+
     /**
      * Constructs an AsciiArtAlgorithm object with the given parameters.
      *
@@ -28,24 +38,173 @@ public class AsciiArtAlgorithm {
 
     /**
      * Runs the ASCII art algorithm.
+     * Only the steps whose parameters changed since the last run are computed again.
      *
      * @return a 2D array of characters representing the ASCII art.
      */
     public char[][] run(){
-        //TODO add static of brightness and of set
-        Image padded = ImageUtilities.padImageWhite(this.parameters.getImage());
-        List<List<Image>> subImages = ImageUtilities.splitByResolution(padded, this.parameters.getRes());
-        char[][] ImgConverted = new char[padded.getHeight() / (padded.getWidth() / this.parameters.getRes())]
-                [this.parameters.getRes()];
-        double brightness;
-        for (int i = 0; i < subImages.size(); i++) {
-            for (int j = 0; j < subImages.get(i).size(); j++) {
-                brightness = ImageUtilities.calculateBrightnessPct(subImages.get(i).get(j));
-                ImgConverted[i][j] = this.parameters.getCharMatcher().getCharByImageBrightness(brightness);
+        colors = this.parameters.getTileColors();
+        return this.parameters.getAsciiArt();
+    }
+
+    /**
+     * Calculates the brightness of every tile of the given viewport, in constant time per tile.
+     *
+     * @param integral   the summed-area table of the padded image.
+     * @param viewport   the rectangle of the padded image to divide into tiles.
+     * @param brightness the buffer to fill with the brightness of every tile, by row and column.
+     * @return the filled buffer.
+     */
+    static double[][] calculateTileBrightness(IntegralImage integral, Viewport viewport, double[][] brightness){
+        int rows = brightness.length;
+        int res = brightness[0].length;
+        for (int i = 0; i < rows; i++) {
+            int top = viewport.tileTop(i, rows);
+            int height = viewport.tileHeight(i, rows);
+            for (int j = 0; j < res; j++) {
+                brightness[i][j] = integral.calculateBrightnessPct(top, viewport.tileLeft(j, res),
+                        height, viewport.tileWidth(j, res));
+            }
+        }
+        return brightness;
+    }
+
+    /**
+     * Matches every tile to the character of the closest brightness.
+     *
+     * @param brightness   the brightness of every tile.
+     * @param charMatcher  the matcher of the charset.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     */
+    static char[][] matchBrightness(double[][] brightness, SubImgCharMatcher charMatcher, char[][] ImgConverted){
+        for (int i = 0; i < brightness.length; i++) {
+            for (int j = 0; j < brightness[i].length; j++) {
+                ImgConverted[i][j] = charMatcher.getCharByImageBrightness(brightness[i][j]);
+            }
+        }
+        return ImgConverted;
+    }
+
+    /**
+     * Matches every tile to the character of the closest brightness, like matchBrightness,
+     * but walks the tiles as a quadtree: a block of tiles whose whole brightness range maps to a
+     * single character is filled with it at once, so uniform regions such as the padding cost
+     * one pyramid lookup instead of one brightness calculation per tile.
+     *
+     * @param pyramid      the brightness pyramid of the padded image.
+     * @param integral     the summed-area table of the padded image.
+     * @param charMatcher  the matcher of the charset.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     */
+    static char[][] matchAdaptive(BrightnessPyramid pyramid, IntegralImage integral,
+                                  SubImgCharMatcher charMatcher, char[][] ImgConverted){
+        int res = ImgConverted[0].length;
+        int tileSize = integral.getWidth() / res;
+        int blockTiles = Math.min(ImgConverted.length, res);
+        for (int i = 0; i < ImgConverted.length; i += blockTiles) {
+            for (int j = 0; j < res; j += blockTiles) {
+                matchBlock(pyramid, integral, charMatcher, ImgConverted, tileSize, i, j, blockTiles);
             }
         }
         return ImgConverted;
     }
+
+    /**
+     * Matches a square block of tiles of the quadtree.
+     *
+     * @param pyramid      the brightness pyramid of the padded image.
+     * @param integral     the summed-area table of the padded image.
+     * @param charMatcher  the matcher of the charset.
+     * @param ImgConverted the characters to fill.
+     * @param tileSize     the side of a tile in pixels.
+     * @param row          the first tile row of the block.
+     * @param col          the first tile column of the block.
+     * @param blockTiles   the side of the block in tiles, a power of 2.
+     */
+    private static void matchBlock(BrightnessPyramid pyramid, IntegralImage integral, SubImgCharMatcher charMatcher,
+                                   char[][] ImgConverted, int tileSize, int row, int col, int blockTiles){
+        int level = Integer.numberOfTrailingZeros(tileSize * blockTiles);
+        // the pyramid is in floats, widen its range so rounding never hides a bucket boundary
+        char darkest = charMatcher.getCharByImageBrightness(
+                pyramid.getMin(level, row / blockTiles, col / blockTiles) - PYRAMID_EPSILON);
+        char brightest = charMatcher.getCharByImageBrightness(
+                pyramid.getMax(level, row / blockTiles, col / blockTiles) + PYRAMID_EPSILON);
+        if (darkest == brightest) {
+            for (int i = row; i < row + blockTiles; i++) {
+                Arrays.fill(ImgConverted[i], col, col + blockTiles, darkest);
+            }
+            return;
+        }
+        if (blockTiles == 1) {
+            ImgConverted[row][col] = charMatcher.getCharByImageBrightness(
+                    integral.calculateBrightnessPct(row * tileSize, col * tileSize, tileSize, tileSize));
+            return;
+        }
+        int half = blockTiles / 2;
+        matchBlock(pyramid, integral, charMatcher, ImgConverted, tileSize, row, col, half);
+        matchBlock(pyramid, integral, charMatcher, ImgConverted, tileSize, row, col + half, half);
+        matchBlock(pyramid, integral, charMatcher, ImgConverted, tileSize, row + half, col, half);
+        matchBlock(pyramid, integral, charMatcher, ImgConverted, tileSize, row + half, col + half, half);
+    }
+
+    /**
+     * Matches every tile of the given viewport to the character of the closest shape.
+     *
+     * @param padded       the padded image.
+     * @param viewport     the rectangle of the padded image to divide into tiles.
+     * @param charMatcher  the matcher of the charset.
+     * @param buffers      the scratch buffers of the shape mask.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     */
+    static char[][] matchShapes(Image padded, Viewport viewport, SubImgCharMatcher charMatcher,
+                                RenderContext.ShapeBuffers buffers, char[][] ImgConverted){
+        int rows = ImgConverted.length;
+        int res = ImgConverted[0].length;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < res; j++) {
+                ImageUtilities.calculateShapeMask(padded, viewport.tileTop(i, rows), viewport.tileLeft(j, res),
+                        viewport.tileHeight(i, rows), viewport.tileWidth(j, res),
+                        SubImgCharMatcher.CONVERTED_ROWS, buffers.greys, buffers.mask);
+                ImgConverted[i][j] = charMatcher.getCharByImageShape(buffers.mask);
+            }
+        }
+        return ImgConverted;
+    }
+
+    /**
+     * Calculates the average color of every tile of the given viewport, quantized to the given
+     * number of levels per channel.
+     *
+     * @param padded      the padded image.
+     * @param viewport    the rectangle of the padded image to divide into tiles.
+     * @param colorLevels the number of levels per color channel.
+     * @param tileColors  the buffer to fill with the quantized color of every tile.
+     * @return the filled buffer.
+     */
+    static int[][] calculateColors(Image padded, Viewport viewport, int colorLevels, int[][] tileColors){
+        int rows = tileColors.length;
+        int res = tileColors[0].length;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < res; j++) {
+                tileColors[i][j] = ImageUtilities.quantizeColor(ImageUtilities.calculateAverageColor(
+                        padded, viewport.tileTop(i, rows), viewport.tileLeft(j, res),
+                        viewport.tileHeight(i, rows), viewport.tileWidth(j, res)), colorLevels);
+            }
+        }
+        return tileColors;
+    }
+
+    /**
+     * Retrieves the tile colors computed by the last run.
+     *
+     * @return the quantized 0xRRGGBB color of every tile, or null if colors were not computed.
+     */
+    public int[][] getColors(){
+        return colors;
+    }
 }
 
 
@@ -0,0 +1,129 @@
+package ascii_art;
+
+import image_char_matching.SubImgCharMatcher;
+
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Matches tiles that contain a strong edge to a character drawn along the edge, and every
+ * other tile by brightness, so outlines survive the conversion.
+ * A Sobel operator runs over the image in the luminance plane of the padded image, in parallel
+ * bands of one tile row, and the gradients of every tile are summed into its structure tensor,
+ * whose dominant orientation is the direction of the edge. The convolution reads the plane in place and the per-tile sums are
+ * kept between renders, so a render only allocates when the number of tiles grows.
+ */
+class EdgeMatcher {
+    /**
+     * The gradient magnitude of a tile, per pixel of the tile side, above which the tile is drawn
+     * as an edge. Dividing by the side rather than the area keeps an edge crossing the tile equally
+     * strong in every resolution; a step of 0.25 in brightness across the tile gives about 2.
+     */
+    static final double EDGE_THRESHOLD = 2.0;
+
+    private static final char VERTICAL = '|';
+    private static final char HORIZONTAL = '-';
+    private static final char RISING = '/';
+    private static final char FALLING = '\\';
+    private static final double EIGHTH_TURN = Math.PI / 8;
+
+    /**
+     * per tile sums of gx * gx, gy * gy, gx * gy and the gradient magnitude
+     */
+    private double[] sumXX = new double[0];
+    private double[] sumYY = new double[0];
+    private double[] sumXY = new double[0];
+    private double[] sumMagnitude = new double[0];
+
+    /**
+     * Matches every tile to a directional character if it contains a strong edge, or by brightness otherwise.
+     *
+     * @param greys        the luminance plane of the padded image, row after row.
+     * @param width        the width of the padded image.
+     * @param image        the rectangle of the original image in the padded image.
+     * @param res          the number of tiles in a row.
+     * @param brightness   the brightness of every tile.
+     * @param charMatcher  the matcher of the charset, for tiles without an edge.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     */
+    char[][] match(FloatBuffer greys, int width, Viewport image, int res, double[][] brightness, SubImgCharMatcher charMatcher,
+                   char[][] ImgConverted) {
+        int tileSize = width / res;
+        int tileRows = brightness.length;
+        int tiles = tileRows * res;
+        if (sumXX.length < tiles) {
+            sumXX = new double[tiles];
+            sumYY = new double[tiles];
+            sumXY = new double[tiles];
+            sumMagnitude = new double[tiles];
+        }
+        IntStream.range(0, tileRows).parallel().forEach(
+                tileRow -> sumBand(greys, width, image, tileSize, res, tileRow));
+        for (int i = 0; i < tileRows; i++) {
+            for (int j = 0; j < res; j++) {
+                int tile = i * res + j;
+                if (sumMagnitude[tile] / tileSize > EDGE_THRESHOLD) {
+                    ImgConverted[i][j] = directionOf(sumXX[tile], sumYY[tile], sumXY[tile]);
+                } else {
+                    ImgConverted[i][j] = charMatcher.getCharByImageBrightness(brightness[i][j]);
+                }
+            }
+        }
+        return ImgConverted;
+    }
+
+    /**
+     * Convolves the pixel rows of one tile row and sums the gradients into its tiles.
+     */
+    private void sumBand(FloatBuffer greys, int width, Viewport image, int tileSize, int res, int tileRow) {
+        int firstTile = tileRow * res;
+        for (int j = 0; j < res; j++) {
+            sumXX[firstTile + j] = 0;
+            sumYY[firstTile + j] = 0;
+            sumXY[firstTile + j] = 0;
+            sumMagnitude[firstTile + j] = 0;
+        }
+        int bottom = image.row() + image.height();
+        int rightEdge = image.col() + image.width();
+        // only the pixels of the image are convolved, and the rows and columns outside it repeat
+        // its border, so the edge between the image and the white padding is not drawn
+        int firstRow = Math.max(tileRow * tileSize, image.row());
+        int lastRow = Math.min((tileRow + 1) * tileSize, bottom);
+        for (int row = firstRow; row < lastRow; row++) {
+            int above = Math.max(row - 1, image.row()) * width;
+            int center = row * width;
+            int below = Math.min(row + 1, bottom - 1) * width;
+            for (int col = image.col(); col < rightEdge; col++) {
+                int left = Math.max(col - 1, image.col());
+                int right = Math.min(col + 1, rightEdge - 1);
+                double gx = greys.get(above + right) + 2 * greys.get(center + right) + greys.get(below + right)
+                        - greys.get(above + left) - 2 * greys.get(center + left) - greys.get(below + left);
+                double gy = greys.get(below + left) + 2 * greys.get(below + col) + greys.get(below + right)
+                        - greys.get(above + left) - 2 * greys.get(above + col) - greys.get(above + right);
+                int tile = firstTile + col / tileSize;
+                sumXX[tile] += gx * gx;
+                sumYY[tile] += gy * gy;
+                sumXY[tile] += gx * gy;
+                sumMagnitude[tile] += Math.sqrt(gx * gx + gy * gy);
+            }
+        }
+    }
+
+    /**
+     * Picks the character drawn along the dominant edge of a tile from its structure tensor.
+     * The dominant gradient orientation is half the angle of (sumXX - sumYY, 2 * sumXY), and the
+     * edge runs across the gradient; rows grow downwards, so a gradient towards the bottom right
+     * belongs to a rising edge.
+     */
+    private static char directionOf(double xx, double yy, double xy) {
+        double gradientAngle = Math.atan2(2 * xy, xx - yy) / 2;
+        if (Math.abs(gradientAngle) < EIGHTH_TURN) {
+            return VERTICAL;
+        }
+        if (Math.abs(gradientAngle) > 3 * EIGHTH_TURN) {
+            return HORIZONTAL;
+        }
+        return gradientAngle > 0 ? RISING : FALLING;
+    }
+}
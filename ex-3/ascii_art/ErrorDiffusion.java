@@ -0,0 +1,151 @@
+package ascii_art;
+
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Floyd-Steinberg error diffusion over the tile brightness grid.
+ * Every tile is matched to the closest character and the difference between the tile and the
+ * character brightness is spread to the tiles right of and below it, which turns the bands of
+ * plain matching on gradients into a mix of neighbouring characters.
+ * The rows are processed concurrently as a diagonal wavefront: a row handles its tiles in blocks
+ * of BLOCK columns, and may start a block once the row above finished the tile right of the
+ * block, so every row trails the one above by a fixed lag of one block. Handing over whole blocks
+ * keeps the synchronization between rows rare. The error a row sends down is written only by
+ * that row, in column order, so the result is the same as the serial algorithm regardless of
+ * the number of threads.
+ */
+class ErrorDiffusion {
+    private static final double RIGHT_WEIGHT = 7.0 / 16;
+    private static final double BELOW_LEFT_WEIGHT = 3.0 / 16;
+    private static final double BELOW_WEIGHT = 5.0 / 16;
+    private static final double BELOW_RIGHT_WEIGHT = 1.0 / 16;
+    /**
+     * The number of tiles a row handles between checks of the row above it.
+     */
+    private static final int BLOCK = 64;
+    /**
+     * The number of busy checks of the row above before yielding the processor.
+     */
+    private static final int SPINS = 1 << 10;
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    /**
+     * The threads of the wavefront. The rows wait for each other by spinning, so they run on
+     * their own pool rather than blocking the common pool that parallel streams share.
+     */
+    private static final ExecutorService WAVEFRONT_POOL =
+            Executors.newFixedThreadPool(THREADS, Thread.ofPlatform().daemon().name("dither-", 0).factory());
+
+    private double[][] brightness;
+    private SubImgCharMatcher charMatcher;
+    private char[][] ImgConverted;
+    /**
+     * below[i] is the error diffused into row i by row i - 1
+     */
+    private double[][] below = new double[1][0];
+    /**
+     * the number of tiles each row finished
+     */
+    private AtomicIntegerArray progress = new AtomicIntegerArray(0);
+    private final AtomicInteger nextRow = new AtomicInteger();
+
+    /**
+     * Matches every tile to a character with error diffusion, using all available processors.
+     * The error buffers are kept for the next call and replaced only when the dimensions change.
+     *
+     * @param brightness   the brightness of every tile.
+     * @param charMatcher  the matcher of the charset.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     */
+    char[][] dither(double[][] brightness, SubImgCharMatcher charMatcher, char[][] ImgConverted) {
+        int rows = brightness.length;
+        int cols = brightness[0].length;
+        if (below.length != rows + 1 || below[0].length != cols) {
+            below = new double[rows + 1][cols];
+            progress = new AtomicIntegerArray(rows);
+        } else {
+            for (int i = 0; i < rows; i++) {
+                Arrays.fill(below[i + 1], 0);
+                progress.set(i, 0);
+            }
+        }
+        nextRow.set(0);
+        this.brightness = brightness;
+        this.charMatcher = charMatcher;
+        this.ImgConverted = ImgConverted;
+        int workers = Math.min(THREADS, rows);
+        // rows are taken in order by whichever worker is running, so a worker only ever waits
+        // for a row that a running worker already took, even if some workers start late
+        List<Future<?>> running = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            running.add(WAVEFRONT_POOL.submit(this::work));
+        }
+        try {
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dithering", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Dithering failed", e.getCause());
+        }
+        return ImgConverted;
+    }
+
+    private void work() {
+        int row;
+        while ((row = nextRow.getAndIncrement()) < brightness.length) {
+            diffuseRow(row);
+        }
+    }
+
+    private void diffuseRow(int row) {
+        int cols = brightness[row].length;
+        double[] fromAbove = below[row];
+        double[] toBelow = below[row + 1];
+        double carry = 0;
+        for (int blockStart = 0; blockStart < cols; blockStart += BLOCK) {
+            int blockEnd = Math.min(cols, blockStart + BLOCK);
+            if (row > 0) {
+                // the last tile of the block also receives error from the tile right of it
+                awaitProgress(row - 1, Math.min(cols, blockEnd + 1));
+            }
+            for (int col = blockStart; col < blockEnd; col++) {
+                double value = brightness[row][col] + fromAbove[col] + carry;
+                double error = value - charMatcher.getMatchedBrightness(value);
+                ImgConverted[row][col] = charMatcher.getCharByImageBrightness(value);
+                carry = error * RIGHT_WEIGHT;
+                if (col > 0) {
+                    toBelow[col - 1] += error * BELOW_LEFT_WEIGHT;
+                }
+                toBelow[col] += error * BELOW_WEIGHT;
+                if (col + 1 < cols) {
+                    toBelow[col + 1] += error * BELOW_RIGHT_WEIGHT;
+                }
+            }
+            progress.set(row, blockEnd);
+        }
+    }
+
+    private void awaitProgress(int row, int tiles) {
+        int spins = 0;
+        while (progress.get(row) < tiles) {
+            if (++spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ascii_art;
+
+import java.util.stream.IntStream;
+
+/**
+ * Auto-contrast of the tile brightness grid by histogram equalization, so that a low-contrast
+ * image spreads over the whole brightness range of the charset instead of a few characters.
+ * The histogram has a fixed number of bins and is built in one parallel pass over the rows,
+ * each thread counting into its own histogram, merged at the end. Its cumulative counts make a
+ * lookup table from brightness to the fraction of tiles darker than it, through which every
+ * tile is remapped, interpolating inside its bin so gradients stay smooth.
+ * The remapping is monotone, so a brighter tile never becomes darker than another.
+ */
+class HistogramEqualizer {
+    private static final int BINS = 256;
+
+    /**
+     * lut[k] is the fraction of tiles in the bins below bin k, so lut[BINS] is 1
+     */
+    private final double[] lut = new double[BINS + 1];
+
+    /**
+     * Equalizes the brightness of the tiles.
+     *
+     * @param brightness the brightness of every tile, between 0 and 1.
+     * @param equalized  the buffer to fill with the equalized brightness of every tile.
+     * @return the filled buffer.
+     */
+    double[][] equalize(double[][] brightness, double[][] equalized) {
+        int[] histogram = IntStream.range(0, brightness.length).parallel().collect(
+                () -> new int[BINS],
+                (counts, row) -> {
+                    for (double value : brightness[row]) {
+                        counts[binOf(value)]++;
+                    }
+                },
+                (counts, other) -> {
+                    for (int k = 0; k < BINS; k++) {
+                        counts[k] += other[k];
+                    }
+                });
+        long tiles = (long) brightness.length * brightness[0].length;
+        long below = 0;
+        for (int k = 0; k < BINS; k++) {
+            lut[k] = (double) below / tiles;
+            below += histogram[k];
+        }
+        lut[BINS] = 1;
+        for (int i = 0; i < brightness.length; i++) {
+            for (int j = 0; j < brightness[i].length; j++) {
+                double value = brightness[i][j];
+                int bin = binOf(value);
+                double inBin = Math.min(1, value * BINS - bin);
+                equalized[i][j] = lut[bin] + (lut[bin + 1] - lut[bin]) * inBin;
+            }
+        }
+        return equalized;
+    }
+
+    private static int binOf(double value) {
+        return Math.max(0, Math.min(BINS - 1, (int) (value * BINS)));
+    }
+}
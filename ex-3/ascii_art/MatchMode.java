@@ -0,0 +1,23 @@
+package ascii_art;
+
+/**
+ * The ways in which the algorithm can match a character to a sub-image.
+ */
+enum MatchMode {
+    /**
+     * Match the character whose brightness is closest to the average brightness of the sub-image.
+     */
+    BRIGHTNESS,
+    /**
+     * Match the character whose glyph is closest in shape to the thresholded sub-image.
+     */
+    SHAPE,
+    /**
+     * Match the character of the closest brightness and diffuse the error to the neighbouring sub-images.
+     */
+    DITHER,
+    /**
+     * Match a character drawn along the edge to sub-images with a strong edge, and by brightness otherwise.
+     */
+    EDGE
+}
@@ -0,0 +1,56 @@
+package ascii_art;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A node of the dataflow graph of the parameters.
+ * The value of a node is computed lazily from its inputs and kept until the node is
+ * invalidated; invalidating a node marks it and every node downstream of it dirty, so a
+ * value is only recomputed when something it depends on changed, and only when it is needed.
+ *
+ * @param <T> the type of the value of the node.
+ */
+class Node<T> {
+    private final Supplier<T> computation;
+    private final List<Node<?>> dependents = new ArrayList<>();
+    private T value;
+    private boolean dirty = true;
+
+    /**
+     * Constructs a node.
+     *
+     * @param computation computes the value of the node, reading the values of the inputs.
+     * @param inputs      the nodes the value is computed from.
+     */
+    Node(Supplier<T> computation, Node<?>... inputs) {
+        this.computation = computation;
+        for (Node<?> input : inputs) {
+            input.dependents.add(this);
+        }
+    }
+
+    /**
+     * Retrieves the value of the node, computing it if the node is dirty.
+     *
+     * @return the value of the node.
+     */
+    T get() {
+        if (dirty) {
+            value = computation.get();
+            dirty = false;
+        }
+        return value;
+    }
+
+    /**
+     * Marks the node and every node downstream of it dirty.
+     */
+    void invalidate() {
+        dirty = true;
+        for (Node<?> dependent : dependents) {
+            dependent.invalidate();
+        }
+    }
+}
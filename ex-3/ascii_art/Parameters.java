@@ -2,16 +2,24 @@ package ascii_art;
 import static java.lang.Math.max;
 
 import ascii_output.ConsoleAsciiOutput;
+import image.BrightnessPyramid;
 import image.Image;
 import image_char_matching.SubImgCharMatcher;
+import image.IntegralImage;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Parameters {
     /**
      * The initial set of characters used for ASCII conversion.
      */
-    private static final char[] INIT_CHARS = new char[]{'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    static final char[] INIT_CHARS = new char[]{'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
 
     /**
      * String indicating that the resolution change did not occur due to exceeding boundaries.
@@ -28,6 +36,26 @@ public class Parameters {
      */
     private static final String FAILED_TO_OPEN =  "Did not execute due to problem with image file.\n";
 
+    /**
+     * String indicating that the viewport was not set because it is not inside the image.
+     */
+    private static final String BAD_VIEWPORT = "Did not set viewport due to exceeding boundaries.\n";
+
+    /**
+     * String indicating that the viewport would have too many rows of characters, formatted with the limit.
+     */
+    private static final String TALL_VIEWPORT = "Did not execute, the viewport would have more than %d rows.\n";
+
+    /**
+     * String indicating that the shard workers failed, and the render was done in this process.
+     */
+    private static final String SHARDS_FAILED = "Shard workers failed, rendered locally: ";
+
+    /**
+     * String indicating that the shard workers could not be started.
+     */
+    private static final String SHARDS_NOT_STARTED = "Did not start shard workers: ";
+
 
     /**
      * The default path to the image file.
@@ -38,6 +66,28 @@ public class Parameters {
      * The default resolution for image processing.
      */
     private static final int DEFAULT_RES = 128;
+
+    /**
+     * Executor of the background image loads, one virtual thread per load.
+     */
+    private static final ExecutorService IMAGE_LOADER = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Value of the color levels when tile colors are not computed.
+     */
+    static final int NO_COLOR = 0;
+
+    /**
+     * The minimal and maximal number of levels per color channel.
+     */
+    private static final int MIN_COLOR_LEVELS = 2;
+    private static final int MAX_COLOR_LEVELS = 256;
+
+    /**
+     * String indicating that the color levels are out of range.
+     */
+    private static final String BAD_COLOR_LEVELS = "Did not change colors, levels must be between "
+            + MIN_COLOR_LEVELS + " and " + MAX_COLOR_LEVELS + ".\n";
     private SubImgCharMatcher charMatcher;
 
     /**
@@ -46,9 +96,81 @@ public class Parameters {
     private int res;
 
     /**
-     * The image being processed.
+     * The image being processed, prepared for the algorithm.
+     */
+    private PreparedImage image;
+
+    /**
+     * The image being loaded in the background, or null if there is none.
+     * Replaces image once it is needed and done.
+     */
+    private Future<PreparedImage> pendingImage;
+
+    /**
+     * The way characters are matched to sub-images.
+     */
+    private MatchMode matchMode = MatchMode.BRIGHTNESS;
+
+    /**
+     * The number of levels per color channel of the tile colors, or NO_COLOR if tiles are not colored.
      */
-    private Image image;
+    private int colorLevels = NO_COLOR;
+
+    /**
+     * Whether brightness matching skips uniform regions of the image using its brightness pyramid.
+     */
+    private boolean adaptive = false;
+
+    /**
+     * The rectangle of the image that is rendered, in pixels of the image, or null to render the whole image.
+     */
+    private Viewport viewport = null;
+
+    /**
+     * The worker processes brightness and shape matching is sharded to, or null to match in this process.
+     */
+    private ShardCoordinator shards = null;
+
+    /**
+     * Whether the tile brightness is equalized over the brightness range before matching.
+     */
+    private boolean autoContrast = false;
+
+    /**
+     * The buffers of the renders, kept between renders so that repeated renders do not allocate.
+     */
+    private final RenderContext renderContext = new RenderContext();
+
+    /*
+     * The dataflow graph of the parameters. Every input has a node that its setters invalidate,
+     * and the derived nodes are only recomputed when they are needed after an input they
+     * depend on changed:
+     * image (decoded and prepared in the background), viewport -> viewport in the padded image
+     * image, res, viewport -> tile brightness
+     * tile brightness, auto-contrast -> contrast brightness
+     * image, res, viewport, contrast brightness, charset, match mode, adaptive, shards, auto-contrast -> ascii art
+     * image, res, viewport, color levels -> tile colors
+     */
+    private final Node<PreparedImage> imageNode = new Node<>(this::awaitImage);
+    private final Node<Integer> resNode = new Node<>(() -> res);
+    private final Node<SubImgCharMatcher> charsetNode = new Node<>(() -> charMatcher);
+    private final Node<MatchMode> matchModeNode = new Node<>(() -> matchMode);
+    private final Node<Integer> colorLevelsNode = new Node<>(() -> colorLevels);
+    private final Node<Boolean> adaptiveNode = new Node<>(() -> adaptive);
+    private final Node<ShardCoordinator> shardsNode = new Node<>(() -> shards);
+    private final Node<Boolean> autoContrastNode = new Node<>(() -> autoContrast);
+    private final Node<Viewport> viewportNode = new Node<>(() -> viewport);
+    private final Node<Viewport> paddedViewportNode = new Node<>(this::paddedViewport, imageNode, viewportNode);
+    private final Node<double[][]> tileBrightnessNode = new Node<>(
+            () -> AsciiArtAlgorithm.calculateTileBrightness(imageNode.get().getIntegral(), paddedViewportNode.get(),
+                    renderContext.tileBrightness(tileRows(), resNode.get())),
+            imageNode, resNode, paddedViewportNode);
+    private final Node<double[][]> contrastBrightnessNode = new Node<>(this::adjustContrast,
+            tileBrightnessNode, autoContrastNode);
+    private final Node<char[][]> asciiArtNode = new Node<>(this::matchChars, imageNode, resNode, viewportNode,
+            paddedViewportNode, contrastBrightnessNode, charsetNode, matchModeNode, adaptiveNode, shardsNode, autoContrastNode);
+    private final Node<int[][]> tileColorsNode = new Node<>(this::calculateColors,
+            imageNode, resNode, paddedViewportNode, colorLevelsNode);
 
     /**
      * Constructor for the Parameters class.
@@ -57,7 +179,7 @@ public class Parameters {
      */
     Parameters() throws IOException {
         try {
-            this.image = new Image(DEFAULT_PATH);
+            this.image = new PreparedImage(new Image(DEFAULT_PATH));
         } catch (IOException e) {
             throw new IOException(e);
         }
@@ -65,6 +187,33 @@ public class Parameters {
         this.charMatcher = new SubImgCharMatcher(INIT_CHARS);
     }
 
+    /**
+     * Constructor for parameters of a single render, e.g. of a request to the render server.
+     *
+     * @param image       the image to render.
+     * @param res         the resolution, as accepted by isValidRes.
+     * @param charMatcher the character matcher of the charset to render with.
+     * @throws IOException if the image is too large to pad.
+     */
+    Parameters(Image image, int res, SubImgCharMatcher charMatcher) throws IOException {
+        this.image = new PreparedImage(image);
+        this.res = res;
+        this.charMatcher = charMatcher;
+    }
+
+    /**
+     * Checks whether the given resolution is one that resUp and resDown could reach for the given image:
+     * a power of 2 between the minimal resolution (1 pixel per character) and the image width.
+     *
+     * @param image the image to render.
+     * @param res   the resolution to check.
+     * @return true if the image can be rendered in this resolution; false otherwise.
+     */
+    static boolean isValidRes(Image image, int res){
+        return Integer.bitCount(res) == 1 && res <= image.getWidth()
+                && res >= max(1, image.getWidth() / image.getHeight());
+    }
+
     /**
      * Retrieves the resolution value.
      *
@@ -75,12 +224,128 @@ public class Parameters {
     }
 
     /**
-     * Retrieves the image object.
+     * Retrieves the image object, waiting for a background load to finish if there is one.
      *
      * @return the image object.
      */
     Image getImage(){
-        return image;
+        return imageNode.get().getImage();
+    }
+
+    /**
+     * Retrieves the image padded with white to powers of 2, waiting for a background load to finish if there is one.
+     *
+     * @return the padded image.
+     */
+    Image getPaddedImage(){
+        return imageNode.get().getPadded();
+    }
+
+    /**
+     * Retrieves the summed-area table of the padded image, waiting for a background load to finish if there is one.
+     *
+     * @return the summed-area table of the padded image.
+     */
+    IntegralImage getIntegralImage(){
+        return imageNode.get().getIntegral();
+    }
+
+    /**
+     * Retrieves the ASCII art of the current parameters, computing only what changed since it was last retrieved.
+     *
+     * @return the ASCII art, not to be modified.
+     */
+    char[][] getAsciiArt(){
+        return asciiArtNode.get();
+    }
+
+    /**
+     * Retrieves the tile colors of the current parameters, computing only what changed since they were last retrieved.
+     *
+     * @return the quantized color of every tile, or null if colors are not computed.
+     */
+    int[][] getTileColors(){
+        return tileColorsNode.get();
+    }
+
+    private char[][] matchChars(){
+        char[][] ImgConverted = renderContext.asciiArt(tileRows(), resNode.get());
+        if (shardsNode.get() != null && viewportNode.get() == null && !autoContrastNode.get()
+                && (matchModeNode.get() == MatchMode.BRIGHTNESS || matchModeNode.get() == MatchMode.SHAPE)){
+            try {
+                return shardsNode.get().render(imageNode.get().getPadded(), resNode.get(), matchModeNode.get(),
+                        charsetNode.get().getChars(), ImgConverted);
+            } catch (IOException e) {
+                System.out.println(SHARDS_FAILED + e.getMessage());
+            }
+        }
+        if (matchModeNode.get() == MatchMode.SHAPE){
+            return AsciiArtAlgorithm.matchShapes(imageNode.get().getPadded(), paddedViewportNode.get(), charsetNode.get(),
+                    renderContext.shapeBuffers(), ImgConverted);
+        }
+        if (matchModeNode.get() == MatchMode.DITHER){
+            return renderContext.errorDiffusion().dither(contrastBrightnessNode.get(), charsetNode.get(), ImgConverted);
+        }
+        // edges and the quadtree work on the tiles of the whole image, a viewport is matched by brightness
+        if (matchModeNode.get() == MatchMode.EDGE && viewportNode.get() == null){
+            BrightnessPyramid pyramid = imageNode.get().getPyramid();
+            return renderContext.edgeMatcher().match(pyramid.getGreys(), pyramid.getWidth(), imageInPadded(),
+                    resNode.get(), contrastBrightnessNode.get(), charsetNode.get(), ImgConverted);
+        }
+        // the quadtree reads the brightness range of blocks from the pyramid of the raw image
+        if (adaptiveNode.get() && viewportNode.get() == null && !autoContrastNode.get()){
+            PreparedImage prepared = imageNode.get();
+            return AsciiArtAlgorithm.matchAdaptive(prepared.getPyramid(), prepared.getIntegral(),
+                    charsetNode.get(), ImgConverted);
+        }
+        return AsciiArtAlgorithm.matchBrightness(contrastBrightnessNode.get(), charsetNode.get(), ImgConverted);
+    }
+
+    private double[][] adjustContrast(){
+        double[][] brightness = tileBrightnessNode.get();
+        if (!autoContrastNode.get()){
+            return brightness;
+        }
+        return renderContext.equalizer().equalize(brightness,
+                renderContext.equalizedBrightness(brightness.length, brightness[0].length));
+    }
+
+    private int[][] calculateColors(){
+        if (colorLevelsNode.get() == NO_COLOR){
+            return null;
+        }
+        return AsciiArtAlgorithm.calculateColors(imageNode.get().getPadded(), paddedViewportNode.get(), colorLevelsNode.get(),
+                renderContext.tileColors(tileRows(), resNode.get()));
+    }
+
+    /**
+     * @return the viewport in the coordinates of the padded image, or the whole padded image if there is none.
+     */
+    private Viewport paddedViewport(){
+        Image padded = imageNode.get().getPadded();
+        Viewport viewport = viewportNode.get();
+        if (viewport == null){
+            return Viewport.whole(padded.getWidth(), padded.getHeight());
+        }
+        Viewport image = imageInPadded();
+        return viewport.moved(image.row(), image.col());
+    }
+
+    /**
+     * @return the rectangle of the original image in the padded image.
+     */
+    private Viewport imageInPadded(){
+        Image image = imageNode.get().getImage();
+        Image padded = imageNode.get().getPadded();
+        return Viewport.whole(image.getWidth(), image.getHeight())
+                .moved((padded.getHeight() - image.getHeight()) / 2, (padded.getWidth() - image.getWidth()) / 2);
+    }
+
+    /**
+     * @return the number of tile rows of the viewport in the current resolution.
+     */
+    private int tileRows(){
+        return paddedViewportNode.get().tileRows(resNode.get());
     }
 
     /**
@@ -99,17 +364,146 @@ public class Parameters {
      */
     void setCharMatcher(SubImgCharMatcher charMatcher){
         this.charMatcher = charMatcher;
+        charsetNode.invalidate();
+    }
+
+    /**
+     * Adds a character to the charset.
+     *
+     * @param c the character to add.
+     */
+    void addChar(char c){
+        charMatcher.addChar(c);
+        charsetNode.invalidate();
+    }
+
+    /**
+     * Removes a character from the charset.
+     *
+     * @param c the character to remove.
+     */
+    void removeChar(char c){
+        charMatcher.removeChar(c);
+        charsetNode.invalidate();
+    }
+
+
+    /**
+     * Sets the way characters are matched to sub-images.
+     *
+     * @param matchMode the match mode to set.
+     */
+    void setMatchMode(MatchMode matchMode){
+        this.matchMode = matchMode;
+        matchModeNode.invalidate();
     }
 
+    /**
+     * Sets whether brightness matching skips uniform regions of the image.
+     *
+     * @param adaptive true to match whole uniform blocks of tiles at once; false to match every tile.
+     */
+    void setAdaptive(boolean adaptive){
+        this.adaptive = adaptive;
+        adaptiveNode.invalidate();
+    }
+
+    /**
+     * Renders only a rectangle of the image from now on, divided into res columns of characters.
+     * Prints a message if the rectangle is not inside the image, or if it would have more than
+     * Viewport.MAX_TILE_ROWS rows of characters.
+     *
+     * @param x      the left column of the rectangle in the image.
+     * @param y      the top row of the rectangle in the image.
+     * @param width  the number of columns of the rectangle.
+     * @param height the number of rows of the rectangle.
+     */
+    void setViewport(int x, int y, int width, int height){
+        Image image = getImage();
+        if (x < 0 || y < 0 || width <= 0 || height <= 0
+                || x + width > image.getWidth() || y + height > image.getHeight()){
+            System.out.print(BAD_VIEWPORT);
+            return;
+        }
+        Viewport viewport = new Viewport(y, x, height, width);
+        if (viewport.tileRows(res) > Viewport.MAX_TILE_ROWS){
+            System.out.printf(TALL_VIEWPORT, Viewport.MAX_TILE_ROWS);
+            return;
+        }
+        this.viewport = viewport;
+        viewportNode.invalidate();
+    }
+
+    /**
+     * Renders the whole image from now on.
+     */
+    void clearViewport(){
+        this.viewport = null;
+        viewportNode.invalidate();
+    }
+
+    /**
+     * Shards brightness and shape matching of the whole image to the given number of local worker
+     * processes from now on, each rendering a horizontal band. The previous workers are stopped.
+     * Prints a message if the workers cannot be started.
+     *
+     * @param workerCount the number of worker processes, or 0 to match in this process.
+     */
+    void setShards(int workerCount){
+        if (shards != null){
+            shards.close();
+            shards = null;
+        }
+        if (workerCount > 0){
+            try {
+                shards = new ShardCoordinator(workerCount);
+            } catch (IOException e) {
+                System.out.println(SHARDS_NOT_STARTED + e.getMessage());
+            }
+        }
+        shardsNode.invalidate();
+    }
+
+    /**
+     * Sets whether the tile brightness is equalized before matching, so low-contrast images use
+     * the whole charset. Shape matching does not use the tile brightness and is not affected.
+     *
+     * @param autoContrast true to equalize the tile brightness; false to match it as is.
+     */
+    void setAutoContrast(boolean autoContrast){
+        this.autoContrast = autoContrast;
+        autoContrastNode.invalidate();
+    }
+
+    /**
+     * Sets the number of levels per color channel of the tile colors.
+     * Prints a message if the number of levels is out of range.
+     *
+     * @param colorLevels the color levels, or NO_COLOR to stop computing tile colors.
+     */
+    void setColorLevels(int colorLevels){
+        if (colorLevels != NO_COLOR && (colorLevels < MIN_COLOR_LEVELS || colorLevels > MAX_COLOR_LEVELS)){
+            System.out.print(BAD_COLOR_LEVELS);
+            return;
+        }
+        this.colorLevels = colorLevels;
+        colorLevelsNode.invalidate();
+    }
 
     /**
      * Increases the resolution of the image by doubling it, if the new resolution does not exceed the image width.
      * Prints a message indicating the updated resolution.
      * If the new resolution exceeds the image width, prints a message indicating the boundaries are exceeded.
+     * If a viewport is set and would have more than Viewport.MAX_TILE_ROWS rows, prints a message instead.
      */
     void resUp(){
-        if (res < image.getWidth()){
+        if (viewport != null && viewport.tileRows(res * 2) > Viewport.MAX_TILE_ROWS){
+            System.out.printf(TALL_VIEWPORT, Viewport.MAX_TILE_ROWS);
+            return;
+        }
+        if (res < getImage().getWidth()){
             res *= 2;
+            resNode.invalidate();
             System.out.print(UPDATED_RES + res);
             return;
         }
@@ -122,8 +516,9 @@ public class Parameters {
      * If the new resolution falls below the minimum resolution, prints a message indicating the boundaries are exceeded.
      */
     void resDown(){
-        if (res > max(1, image.getWidth() / image.getHeight())){
+        if (res > max(1, getImage().getWidth() / getImage().getHeight())){
             res /= 2;
+            resNode.invalidate();
             System.out.print(UPDATED_RES + res);
             return;
         }
@@ -132,16 +527,70 @@ public class Parameters {
 
     /**
      * Updates the image with the new image file located at the specified path.
-     * Prints a message if there is an issue opening the image file.
+     * The image is read and prepared on a background thread, and the shell only waits for it
+     * when the image is next needed. A load that has not finished yet is cancelled.
+     * Prints a message if there is an issue opening the image file, either right away or
+     * when the image is next needed, in which case the previous image is kept.
+     * Once the new image is in place, the viewport is cleared and the resolution is fitted to it.
      *
      * @param path the path to the new image file.
      */
     void updateImage(String path)  {
+        if (!new File(path).canRead()){
+            System.out.print(FAILED_TO_OPEN);
+            return;
+        }
+        if (pendingImage != null){
+            pendingImage.cancel(true);
+        }
+        pendingImage = IMAGE_LOADER.submit(() -> PreparedImage.load(path));
+        imageNode.invalidate();
+    }
+
+    /**
+     * Halves or doubles the resolution until resUp and resDown could reach it for the current image,
+     * printing a message if it changed.
+     */
+    private void fitRes(){
+        Image current = image.getImage();
+        int fitted = res;
+        while (fitted > current.getWidth()){
+            fitted /= 2;
+        }
+        while (fitted < max(1, current.getWidth() / current.getHeight())){
+            fitted *= 2;
+        }
+        if (fitted != res){
+            res = fitted;
+            resNode.invalidate();
+            System.out.print(UPDATED_RES + res);
+        }
+    }
+
+    /**
+     * Waits for the image being loaded in the background, if there is one, and makes it the current image.
+     * Prints a message and keeps the previous image, with its viewport and resolution, if the load failed.
+     *
+     * @return the current image.
+     */
+    private PreparedImage awaitImage(){
+        if (pendingImage == null){
+            return image;
+        }
         try {
-            image = new Image(path);
-        } catch (IOException e) {
+            image = pendingImage.get();
+            // a viewport or resolution of the previous image need not fit the new one
+            viewport = null;
+            viewportNode.invalidate();
+            fitRes();
+        } catch (ExecutionException | CancellationException e) {
             System.out.print(FAILED_TO_OPEN);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return image;
         }
+        pendingImage = null;
+        return image;
     }
 
 
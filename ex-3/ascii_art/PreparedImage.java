@@ -0,0 +1,95 @@
+package ascii_art;
+
+import image.BrightnessPyramid;
+import image.Image;
+import image.ImageUtilities;
+import image.IntegralImage;
+
+import java.io.IOException;
+
+/**
+ * An image together with everything the algorithm derives from the image alone:
+ * the image padded to powers of 2, the summed-area table of the padded image and its min/max brightness pyramid.
+ * Preparing these is the slow part of changing the image, so it is done once per image,
+ * on a background thread when the image is loaded, so the first render after loading does not build them.
+ * Shard workers do not use a PreparedImage, each builds the summed-area table of its own band only.
+ */
+class PreparedImage {
+    private final Image image;
+    private final Image padded;
+    private final IntegralImage integral;
+    private final BrightnessPyramid pyramid;
+
+    /**
+     * Prepares the given image.
+     *
+     * @param image the image to prepare.
+     * @throws IOException if the image is too large to pad.
+     */
+    PreparedImage(Image image) throws IOException {
+        this.image = image;
+        this.padded = ImageUtilities.padImageWhite(image);
+        this.integral = new IntegralImage(padded);
+        this.pyramid = new BrightnessPyramid(padded);
+    }
+
+    private PreparedImage(Image image, Image padded, IntegralImage integral, BrightnessPyramid pyramid) {
+        this.image = image;
+        this.padded = padded;
+        this.integral = integral;
+        this.pyramid = pyramid;
+    }
+
+    /**
+     * Reads and prepares the image at the given path, keeping large images off-heap (see Image.open).
+     * Stops between the steps if the calling thread is interrupted, e.g. because a newer image was requested.
+     *
+     * @param path the path of the image file.
+     * @return the prepared image.
+     * @throws IOException          if the image cannot be read or is too large to pad.
+     * @throws InterruptedException if the loading was cancelled.
+     */
+    static PreparedImage load(String path) throws IOException, InterruptedException {
+        Image image = Image.open(path);
+        checkInterrupted();
+        Image padded = ImageUtilities.padImageWhite(image);
+        checkInterrupted();
+        IntegralImage integral = new IntegralImage(padded);
+        checkInterrupted();
+        return new PreparedImage(image, padded, integral, new BrightnessPyramid(padded));
+    }
+
+    private static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * @return the original image.
+     */
+    Image getImage() {
+        return image;
+    }
+
+    /**
+     * @return the image padded with white to powers of 2.
+     */
+    Image getPadded() {
+        return padded;
+    }
+
+    /**
+     * @return the summed-area table of the padded image.
+     */
+    IntegralImage getIntegral() {
+        return integral;
+    }
+
+    /**
+     * @return the min/max brightness pyramid of the padded image.
+     */
+    BrightnessPyramid getPyramid() {
+        return pyramid;
+    }
+}
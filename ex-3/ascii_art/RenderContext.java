@@ -0,0 +1,110 @@
+package ascii_art;
+
+import image_char_matching.SubImgCharMatcher;
+
+/**
+ * The buffers of the renders of one Parameters, kept between renders so that rendering again
+ * in the same dimensions allocates (almost) nothing. Every buffer is replaced only when the
+ * number of tile rows or columns changes, i.e. when the resolution or the image size changes.
+ * The arrays handed out are overwritten by the next render that needs them.
+ */
+class RenderContext {
+    private double[][] tileBrightness = new double[0][];
+    private double[][] equalizedBrightness = new double[0][];
+    private char[][] asciiArt = new char[0][];
+    private int[][] tileColors = new int[0][];
+    private final ErrorDiffusion errorDiffusion = new ErrorDiffusion();
+    private final EdgeMatcher edgeMatcher = new EdgeMatcher();
+    private final HistogramEqualizer equalizer = new HistogramEqualizer();
+    private final ShapeBuffers shapeBuffers = new ShapeBuffers();
+
+    /**
+     * The scratch buffers of a single shape mask.
+     */
+    static class ShapeBuffers {
+        /**
+         * the grey value of every sample of the mask
+         */
+        final double[] greys = new double[SubImgCharMatcher.NUM_OF_BOOLEAN_VALUES];
+        /**
+         * the mask
+         */
+        final long[] mask = new long[SubImgCharMatcher.NUM_OF_BOOLEAN_VALUES / Long.SIZE];
+    }
+
+    /**
+     * @param rows the number of tile rows.
+     * @param cols the number of tile columns.
+     * @return the tile brightness buffer of these dimensions.
+     */
+    double[][] tileBrightness(int rows, int cols) {
+        if (tileBrightness.length != rows || tileBrightness[0].length != cols) {
+            tileBrightness = new double[rows][cols];
+        }
+        return tileBrightness;
+    }
+
+    /**
+     * @param rows the number of tile rows.
+     * @param cols the number of tile columns.
+     * @return the equalized tile brightness buffer of these dimensions.
+     */
+    double[][] equalizedBrightness(int rows, int cols) {
+        if (equalizedBrightness.length != rows || equalizedBrightness[0].length != cols) {
+            equalizedBrightness = new double[rows][cols];
+        }
+        return equalizedBrightness;
+    }
+
+    /**
+     * @param rows the number of tile rows.
+     * @param cols the number of tile columns.
+     * @return the character grid of these dimensions.
+     */
+    char[][] asciiArt(int rows, int cols) {
+        if (asciiArt.length != rows || asciiArt[0].length != cols) {
+            asciiArt = new char[rows][cols];
+        }
+        return asciiArt;
+    }
+
+    /**
+     * @param rows the number of tile rows.
+     * @param cols the number of tile columns.
+     * @return the tile color buffer of these dimensions.
+     */
+    int[][] tileColors(int rows, int cols) {
+        if (tileColors.length != rows || tileColors[0].length != cols) {
+            tileColors = new int[rows][cols];
+        }
+        return tileColors;
+    }
+
+    /**
+     * @return the error diffusion of dither mode, which keeps its own buffers.
+     */
+    ErrorDiffusion errorDiffusion() {
+        return errorDiffusion;
+    }
+
+    /**
+     * @return the matcher of edge mode, which keeps its own buffers.
+     */
+    EdgeMatcher edgeMatcher() {
+        return edgeMatcher;
+    }
+
+    /**
+     * @return the histogram equalizer of auto-contrast, which keeps its lookup table.
+     */
+    HistogramEqualizer equalizer() {
+        return equalizer;
+    }
+
+    /**
+     * @return the scratch buffers of shape masks.
+     */
+    ShapeBuffers shapeBuffers() {
+        return shapeBuffers;
+    }
+}
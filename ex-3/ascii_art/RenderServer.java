@@ -0,0 +1,238 @@
+package ascii_art;
+
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP server that renders uploaded images as ASCII art, so a single running JVM
+ * can serve many renders.
+ * POST an encoded image as the request body to /render, with the optional query parameters
+ * res (the resolution, default 128), chars (the charset, default the digits) and
+ * output (text or html, default text). Images larger than MAX_BODY_BYTES, or of more than
+ * MAX_PIXELS pixels, are refused with 413; the size is read from the image header before
+ * the pixels are decoded.
+ * Every request runs on its own virtual thread with its own Parameters; only the char
+ * brightness and glyph caches of SubImgCharMatcher are shared between requests.
+ */
+class RenderServer {
+    /**
+     * The port the server listens on if none is given.
+     */
+    static final int DEFAULT_PORT = 8080;
+
+    private static final String RENDER_PATH = "/render";
+    private static final String POST = "POST";
+    private static final String RES_PARAM = "res";
+    private static final String CHARS_PARAM = "chars";
+    private static final String OUTPUT_PARAM = "output";
+    private static final String OUTPUT_TEXT = "text";
+    private static final String OUTPUT_HTML = "html";
+    private static final String DEFAULT_RES = "128";
+    private static final String COURIERNEW = "Courier New";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+    private static final String HTML_TYPE = "text/html; charset=utf-8";
+    private static final String LISTENING = "Rendering on http://localhost:%d%s%n";
+    private static final String BAD_IMAGE = "Did not execute due to problem with image file.";
+    private static final String BAD_RES = "Did not execute, resolution must be a power of 2 within the image.";
+    private static final String BAD_OUTPUT = "Did not execute, output must be text or html.";
+    private static final String BAD_FORMAT = "Did not execute due to incorrect format.";
+    private static final String ONLY_POST = "Only POST is supported.";
+    private static final String TOO_LARGE = "Did not execute, the image is larger than 32 MB.";
+    private static final String TOO_MANY_PIXELS = "Did not execute, the image has more than 2048x2048 pixels.";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String DIGITS = "[0-9]+";
+    private static final String QUERY_SEPARATOR = "&";
+    private static final String VALUE_SEPARATOR = "=";
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_BAD_METHOD = 405;
+    private static final int HTTP_TOO_LARGE = 413;
+    /**
+     * The largest encoded image a request may upload, so a single request cannot exhaust the heap.
+     */
+    private static final int MAX_BODY_BYTES = 32 * 1024 * 1024;
+    /**
+     * The most pixels of an uploaded image, as a small encoded image may decode to a huge one,
+     * and every pixel is kept on the heap while rendering.
+     */
+    private static final long MAX_PIXELS = 2048L * 2048;
+    private static final long UNKNOWN_PIXELS = -1;
+    private static final int NO_RESPONSE_LENGTH = 0;
+
+    private RenderServer() {
+    }
+
+    /**
+     * Starts the server on the loopback interface. The server keeps running until the JVM exits.
+     *
+     * @param port the port to listen on.
+     * @throws IOException if the server cannot bind to the port.
+     */
+    static void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext(RENDER_PATH, RenderServer::handle);
+        server.start();
+        System.out.printf(LISTENING, server.getAddress().getPort(), RENDER_PATH);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(POST)) {
+                respond(exchange, HTTP_BAD_METHOD, TEXT_TYPE, ONLY_POST);
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String output = query.getOrDefault(OUTPUT_PARAM, OUTPUT_TEXT);
+            if (!output.equals(OUTPUT_TEXT) && !output.equals(OUTPUT_HTML)) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_OUTPUT);
+                return;
+            }
+            int res;
+            try {
+                res = Integer.parseInt(query.getOrDefault(RES_PARAM, DEFAULT_RES));
+            } catch (NumberFormatException e) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_FORMAT);
+                return;
+            }
+            char[] charset = query.containsKey(CHARS_PARAM) ?
+                    query.get(CHARS_PARAM).toCharArray() : Parameters.INIT_CHARS.clone();
+            if (charset.length == 0) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_FORMAT);
+                return;
+            }
+            String contentLength = exchange.getRequestHeaders().getFirst(CONTENT_LENGTH);
+            if (contentLength != null && !contentLength.matches(DIGITS)) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_FORMAT);
+                return;
+            }
+            if (contentLength != null && (contentLength.length() > String.valueOf(MAX_BODY_BYTES).length()
+                    || Long.parseLong(contentLength) > MAX_BODY_BYTES)) {
+                respond(exchange, HTTP_TOO_LARGE, TEXT_TYPE, TOO_LARGE);
+                return;
+            }
+            byte[] upload;
+            try (InputStream body = exchange.getRequestBody()) {
+                // a chunked body has no length, so read one byte past the limit to detect it
+                upload = body.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (upload.length > MAX_BODY_BYTES) {
+                respond(exchange, HTTP_TOO_LARGE, TEXT_TYPE, TOO_LARGE);
+                return;
+            }
+            long pixels = countPixels(upload);
+            if (pixels == UNKNOWN_PIXELS) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_IMAGE);
+                return;
+            }
+            if (pixels > MAX_PIXELS) {
+                respond(exchange, HTTP_TOO_LARGE, TEXT_TYPE, TOO_MANY_PIXELS);
+                return;
+            }
+            Image image;
+            try {
+                image = new Image(new ByteArrayInputStream(upload));
+            } catch (IOException e) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_IMAGE);
+                return;
+            }
+            if (!Parameters.isValidRes(image, res)) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_RES);
+                return;
+            }
+            Parameters parameters;
+            try {
+                parameters = new Parameters(image, res, new SubImgCharMatcher(charset));
+            } catch (IOException e) {
+                respond(exchange, HTTP_BAD_REQUEST, TEXT_TYPE, BAD_IMAGE);
+                return;
+            }
+            char[][] chars = new AsciiArtAlgorithm(parameters).run();
+            exchange.getResponseHeaders().set(CONTENT_TYPE, output.equals(OUTPUT_HTML) ? HTML_TYPE : TEXT_TYPE);
+            exchange.sendResponseHeaders(HTTP_OK, NO_RESPONSE_LENGTH);
+            try (Writer writer = new BufferedWriter(
+                    new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+                if (output.equals(OUTPUT_HTML)) {
+                    HtmlAsciiOutput.write(writer, COURIERNEW, chars);
+                } else {
+                    ConsoleAsciiOutput.write(writer, chars);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the size of the encoded image from its header, without decoding its pixels.
+     *
+     * @param upload the encoded image.
+     * @return the number of pixels of the image, or UNKNOWN_PIXELS if it is not a supported image.
+     */
+    private static long countPixels(byte[] upload) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(upload))) {
+            if (input == null) {
+                return UNKNOWN_PIXELS;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return UNKNOWN_PIXELS;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return UNKNOWN_PIXELS;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split(QUERY_SEPARATOR)) {
+            int separator = pair.indexOf(VALUE_SEPARATOR);
+            if (separator < 0) {
+                continue;
+            }
+            query.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, String message)
+            throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set(CONTENT_TYPE, type);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
@@ -0,0 +1,189 @@
+package ascii_art;
+
+import image.Image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Renders the padded image in horizontal bands on local worker processes, for images and
+ * resolutions beyond the heap and cores of a single JVM.
+ * The padded image is written once to a raster file, and every worker is sent its band as a
+ * range of rows of the file together with the resolution, match mode and charset, over its
+ * standard input. The workers render their bands at the same time, each mapping only its own
+ * rows, and the coordinator stitches the rows they answer in order.
+ * Only brightness and shape matching are sharded, as they match every tile on its own.
+ * The summed-area table and the shapes of a band are only built by its worker, so the
+ * coordinator holds nothing per band beyond the stitched chars.
+ */
+class ShardCoordinator implements AutoCloseable {
+    private static final String WORKER_ARG = "worker";
+    private static final String RASTER_PREFIX = "ascii-art-";
+    private static final String RASTER_SUFFIX = ".raster";
+
+    private final List<String> workerCommand;
+    private final Process[] workers;
+    private final DataOutputStream[] requests;
+    private final DataInputStream[] answers;
+    private final Path rasterPath;
+    /**
+     * the padded image in the raster file, or null before the first render
+     */
+    private Image rasterImage;
+
+    /**
+     * Starts the worker processes, running the classes of this JVM.
+     *
+     * @param workerCount the number of worker processes.
+     * @throws IOException if a worker cannot be started.
+     */
+    ShardCoordinator(int workerCount) throws IOException {
+        this(workerCount, List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Shell.class.getName(), WORKER_ARG));
+    }
+
+    /**
+     * Starts the worker processes with the given command, e.g. to start other workers in tests.
+     *
+     * @param workerCount   the number of worker processes.
+     * @param workerCommand the command that starts a worker process.
+     * @throws IOException if a worker cannot be started.
+     */
+    ShardCoordinator(int workerCount, List<String> workerCommand) throws IOException {
+        this.workerCommand = workerCommand;
+        workers = new Process[workerCount];
+        requests = new DataOutputStream[workerCount];
+        answers = new DataInputStream[workerCount];
+        rasterPath = Files.createTempFile(RASTER_PREFIX, RASTER_SUFFIX);
+        rasterPath.toFile().deleteOnExit();
+        for (int i = 0; i < workerCount; i++) {
+            startWorker(i);
+        }
+    }
+
+    private void startWorker(int i) throws IOException {
+        workers[i] = new ProcessBuilder(workerCommand)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        requests[i] = new DataOutputStream(new BufferedOutputStream(workers[i].getOutputStream()));
+        answers[i] = new DataInputStream(new BufferedInputStream(workers[i].getInputStream()));
+    }
+
+    /**
+     * Renders the padded image on the workers.
+     * Every band is answered before a failure is reported, so no answer is left in the pipes for
+     * the next render. If the workers cannot be talked to, e.g. because one has died, all of them
+     * are replaced, as the answers left in their pipes are unknown.
+     *
+     * @param padded       the padded image.
+     * @param res          the number of tile columns.
+     * @param matchMode    the match mode, BRIGHTNESS or SHAPE.
+     * @param charset      the chars of the charset.
+     * @param ImgConverted the buffer to fill with the character of every tile.
+     * @return the filled buffer.
+     * @throws IOException if a worker fails.
+     */
+    char[][] render(Image padded, int res, MatchMode matchMode, char[] charset, char[][] ImgConverted)
+            throws IOException {
+        String failure;
+        try {
+            failure = renderBands(padded, res, matchMode, charset, ImgConverted);
+        } catch (IOException e) {
+            restartWorkers(e);
+            throw e;
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        return ImgConverted;
+    }
+
+    /**
+     * @return the message of the first band that could not be rendered, or null if all were.
+     * @throws IOException if a worker cannot be talked to or answers a band of the wrong size.
+     */
+    private String renderBands(Image padded, int res, MatchMode matchMode, char[] charset, char[][] ImgConverted)
+            throws IOException {
+        if (padded != rasterImage) {
+            rasterImage = null;
+            padded.saveRaster(rasterPath.toString());
+            rasterImage = padded;
+        }
+        int tileSize = padded.getWidth() / res;
+        int tileRows = ImgConverted.length;
+        int bandTiles = (tileRows + workers.length - 1) / workers.length;
+        int bands = (tileRows + bandTiles - 1) / bandTiles;
+        // all requests are sent before any answer is read, so the workers render at the same time
+        for (int i = 0; i < bands; i++) {
+            int firstTile = i * bandTiles;
+            int tiles = Math.min(bandTiles, tileRows - firstTile);
+            requests[i].writeUTF(rasterPath.toString());
+            requests[i].writeInt(firstTile * tileSize);
+            requests[i].writeInt(tiles * tileSize);
+            requests[i].writeInt(res);
+            requests[i].writeInt(matchMode.ordinal());
+            requests[i].writeUTF(new String(charset));
+            requests[i].flush();
+        }
+        String failure = null;
+        for (int i = 0; i < bands; i++) {
+            int rows = answers[i].readInt();
+            if (rows == ShardWorker.NO_TILES) {
+                String message = answers[i].readUTF();
+                failure = failure == null ? message : failure;
+                continue;
+            }
+            int cols = answers[i].readInt();
+            int tiles = Math.min(bandTiles, tileRows - i * bandTiles);
+            if (rows != tiles || cols != res) {
+                throw new IOException(String.format("Worker answered %dx%d tiles for a band of %dx%d", rows, cols,
+                        tiles, res));
+            }
+            for (int row = i * bandTiles; row < i * bandTiles + rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    ImgConverted[row][col] = answers[i].readChar();
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Replaces every worker with a new one, after the given failure.
+     */
+    private void restartWorkers(IOException failure) {
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].destroyForcibly();
+            try {
+                startWorker(i);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Stops the workers and deletes the raster file.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                requests[i].close();
+                workers[i].waitFor();
+            } catch (IOException e) {
+                workers[i].destroy();
+            } catch (InterruptedException e) {
+                workers[i].destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+        rasterPath.toFile().delete();
+    }
+}
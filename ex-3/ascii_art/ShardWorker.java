@@ -0,0 +1,84 @@
+package ascii_art;
+
+import image.Image;
+import image.IntegralImage;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * A worker process of ShardCoordinator, started as "Shell worker".
+ * The worker reads band requests from its standard input and answers each with the chars of
+ * the band on its standard output, until its input is closed. A request is the path of the
+ * raster file of the padded image, the first pixel row and number of pixel rows of the band,
+ * the resolution, the ordinal of the match mode and the charset. The answer is the number of
+ * tile rows and columns of the band followed by its chars, or NO_TILES and an error message.
+ * Only the band is mapped from the raster file, so the worker needs memory for its band alone.
+ */
+class ShardWorker {
+    /**
+     * The number of tile rows answered when the band could not be rendered.
+     */
+    static final int NO_TILES = -1;
+
+    private ShardWorker() {
+    }
+
+    /**
+     * Answers band requests from the standard input until it is closed.
+     *
+     * @throws IOException if the standard streams fail.
+     */
+    static void run() throws IOException {
+        DataInputStream requests = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream answers = new DataOutputStream(new BufferedOutputStream(System.out));
+        while (true) {
+            String rasterPath;
+            try {
+                rasterPath = requests.readUTF();
+            } catch (EOFException e) {
+                return;
+            }
+            int firstRow = requests.readInt();
+            int rows = requests.readInt();
+            int res = requests.readInt();
+            MatchMode matchMode = MatchMode.values()[requests.readInt()];
+            char[] charset = requests.readUTF().toCharArray();
+            char[][] band;
+            try {
+                band = renderBand(Image.openRasterRows(rasterPath, firstRow, rows), res, matchMode, charset);
+            } catch (IOException e) {
+                answers.writeInt(NO_TILES);
+                answers.writeUTF(String.valueOf(e.getMessage()));
+                answers.flush();
+                continue;
+            }
+            answers.writeInt(band.length);
+            answers.writeInt(res);
+            for (char[] row : band) {
+                for (char c : row) {
+                    answers.writeChar(c);
+                }
+            }
+            answers.flush();
+        }
+    }
+
+    private static char[][] renderBand(Image band, int res, MatchMode matchMode, char[] charset) {
+        Viewport whole = Viewport.whole(band.getWidth(), band.getHeight());
+        SubImgCharMatcher charMatcher = new SubImgCharMatcher(charset);
+        char[][] ImgConverted = new char[whole.tileRows(res)][res];
+        if (matchMode == MatchMode.SHAPE) {
+            return AsciiArtAlgorithm.matchShapes(band, whole, charMatcher, new RenderContext.ShapeBuffers(),
+                    ImgConverted);
+        }
+        double[][] brightness = AsciiArtAlgorithm.calculateTileBrightness(new IntegralImage(band), whole,
+                new double[ImgConverted.length][res]);
+        return AsciiArtAlgorithm.matchBrightness(brightness, charMatcher, ImgConverted);
+    }
+}
@@ -1,11 +1,20 @@
 package ascii_art;
 
+import ascii_output.AnsiAsciiOutput;
 import ascii_output.AsciiOutput;
+import ascii_output.AsyncAsciiOutput;
+import ascii_output.BinaryAsciiOutput;
+import ascii_output.BinaryFrameReader;
+import ascii_output.ColorHtmlAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.ImageAsciiOutput;
 import image_char_matching.SubImgCharMatcher;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 
 import static java.lang.Math.max;
@@ -38,9 +47,42 @@ public class Shell {
 
     private static final String OUTPUT_HTML_PATH = "out.html";
     private static final String OUTPUT_HTML_COMMAND = "output html";
+    private static final String OUTPUT_COLOR_HTML_COMMAND = "output color";
+    private static final String OUTPUT_PNG_PATH = "out.png";
+    private static final String OUTPUT_PNG_COMMAND = "output png";
+    private static final String OUTPUT_JPEG_PATH = "out.jpeg";
+    private static final String OUTPUT_JPEG_COMMAND = "output jpeg";
+    private static final String OUTPUT_BINARY_PATH = "out.frames";
+    private static final String OUTPUT_BINARY_COMMAND = "output binary";
+    private static final String OUTPUT_ANSI_COMMAND = "output ansi";
+    private static final String COLOR_PREFIX = "color ";
+    private static final String COLOR_OFF = "off";
+    private static final String VIEWPORT_PREFIX = "viewport ";
+    private static final String VIEWPORT_OFF = "off";
+    private static final String SHARD_PREFIX = "shard ";
+    private static final String SHARD_OFF = "off";
+    private static final String PLAY_PREFIX = "play ";
+    private static final String PLAY_FAILED = "Did not execute, cannot play the frames file \"%s\".\n";
     private static final String COURIERNEW="Courier New";
+    private static final String MATCH_BRIGHTNESS_COMMAND = "match brightness";
+    private static final String MATCH_SHAPE_COMMAND = "match shape";
+    private static final String MATCH_DITHER_COMMAND = "match dither";
+    private static final String MATCH_EDGE_COMMAND = "match edge";
+    private static final String ADAPTIVE_ON_COMMAND = "adaptive on";
+    private static final String ADAPTIVE_OFF_COMMAND = "adaptive off";
+    private static final String CONTRAST_AUTO_COMMAND = "contrast auto";
+    private static final String CONTRAST_OFF_COMMAND = "contrast off";
 
-    private static AsciiOutput asciiOutput = new ConsoleAsciiOutput();
+    private static final String SERVE_ARG = "serve";
+    private static final String WORKER_ARG = "worker";
+    private static final String SCRIPT_ARG = "script";
+    private static final String USAGE = "Usage: Shell [serve [port] | script <path>]";
+    private static final String SCRIPT_FAILED = "Did not execute, cannot read the script \"%s\".";
+    private static final String SERVE_USAGE = "Usage: serve [port], where port is between 0 and 65535.";
+    private static final int INVALID_PORT = -1;
+    private static final int MAX_PORT = 65535;
+
+    private AsciiOutput asciiOutput = new ConsoleAsciiOutput();
 
 
     public void run() throws IOException {
@@ -56,26 +98,93 @@ public class Shell {
             System.out.print(PREFIX);
             String newCommand = KeyboardInput.readLine();
             if (newCommand.equals(EXIT_COMMAND)){
+                closeOutput();
                 return;
             }
             executeCommand(newCommand,parameters);
         }
     }
 
+    /**
+     * Runs the commands of a script file without prompting, until its end or an exit command.
+     * Commands that change the parameters only mark what depends on them as outdated, so a
+     * sequence of changes is evaluated once, by the next asciiArt command.
+     *
+     * @param scriptPath the path of the script, one command per line.
+     * @throws IOException if the script cannot be read.
+     */
+    public void runScript(String scriptPath) throws IOException {
+        Parameters parameters;
+        try {
+            parameters = new Parameters();
+        } catch (IOException e) {
+            System.out.println(EXPECTION);
+            return;
+        }
+        try (BufferedReader script = Files.newBufferedReader(Path.of(scriptPath))) {
+            String newCommand;
+            while ((newCommand = script.readLine()) != null){
+                newCommand = newCommand.trim();
+                if (newCommand.equals(EXIT_COMMAND)){
+                    break;
+                }
+                if (!newCommand.isEmpty()){
+                    executeCommand(newCommand,parameters);
+                }
+            }
+        } finally {
+            closeOutput();
+        }
+    }
+
     private void executeCommand(String newCommand, Parameters parameters){
         switch (newCommand){
             case CHARS -> parameters.getCharMatcher().showChars();
             case RES_UP -> parameters.resUp();
             case RES_DOWN -> parameters.resDown();
-            case OUTPUT_CONSOLE -> asciiOutput = new ConsoleAsciiOutput();
-            case OUTPUT_HTML -> asciiOutput = new HtmlAsciiOutput(OUTPUT_HTML_PATH,COURIERNEW);
+            case OUTPUT_CONSOLE_COMMAND -> setOutput(new ConsoleAsciiOutput());
+            case OUTPUT_HTML_COMMAND -> setOutput(new AsyncAsciiOutput(new HtmlAsciiOutput(OUTPUT_HTML_PATH,COURIERNEW)));
+            case OUTPUT_COLOR_HTML_COMMAND ->
+                    setOutput(new AsyncAsciiOutput(new ColorHtmlAsciiOutput(OUTPUT_HTML_PATH,COURIERNEW)));
+            case OUTPUT_PNG_COMMAND -> setOutput(new AsyncAsciiOutput(new ImageAsciiOutput(OUTPUT_PNG_PATH,"png")));
+            case OUTPUT_JPEG_COMMAND -> setOutput(new AsyncAsciiOutput(new ImageAsciiOutput(OUTPUT_JPEG_PATH,"jpeg")));
+            // every frame is kept, so renders are not coalesced in the background
+            case OUTPUT_BINARY_COMMAND -> setOutput(new BinaryAsciiOutput(OUTPUT_BINARY_PATH,true));
+            case OUTPUT_ANSI_COMMAND -> setOutput(new AnsiAsciiOutput(AnsiAsciiOutput.DEFAULT_FPS));
             case ASCII_ART -> runAlgorithm(parameters);
+            case MATCH_BRIGHTNESS_COMMAND -> parameters.setMatchMode(MatchMode.BRIGHTNESS);
+            case MATCH_SHAPE_COMMAND -> parameters.setMatchMode(MatchMode.SHAPE);
+            case MATCH_DITHER_COMMAND -> parameters.setMatchMode(MatchMode.DITHER);
+            case MATCH_EDGE_COMMAND -> parameters.setMatchMode(MatchMode.EDGE);
+            case ADAPTIVE_ON_COMMAND -> parameters.setAdaptive(true);
+            case ADAPTIVE_OFF_COMMAND -> parameters.setAdaptive(false);
+            case CONTRAST_AUTO_COMMAND -> parameters.setAutoContrast(true);
+            case CONTRAST_OFF_COMMAND -> parameters.setAutoContrast(false);
             default -> executeRemainsCommands(newCommand,parameters);
 
 
         }
     }
 
+    /**
+     * Replaces the output, after the previous output finished writing what it was given.
+     *
+     * @param newOutput the new output.
+     */
+    private void setOutput(AsciiOutput newOutput){
+        closeOutput();
+        asciiOutput = newOutput;
+    }
+
+    /**
+     * Waits for a background output to finish writing, so that no render is lost on exit.
+     */
+    private void closeOutput(){
+        if (asciiOutput instanceof AsyncAsciiOutput asyncOutput){
+            asyncOutput.close();
+        }
+    }
+
     private void runAlgorithm(Parameters parameters){
         if (parameters.getCharMatcher().hasNoChars()){
             System.out.print(NO_CHARS);
@@ -83,7 +192,7 @@ public class Shell {
         }
         AsciiArtAlgorithm asciiArtAlgorithm = new AsciiArtAlgorithm(parameters);
         char[][] res = asciiArtAlgorithm.run();
-        asciiOutput.out(res);
+        asciiOutput.out(res, asciiArtAlgorithm.getColors());
     }
     private void executeRemainsCommands(String newCommand,Parameters parameters){
         if (newCommand.startsWith(ADD)){
@@ -92,13 +201,87 @@ public class Shell {
         else if (newCommand.startsWith(REMOVE)){
             executeAddRemove(newCommand.substring(7),parameters,false);
         }
+        else if (newCommand.startsWith(COLOR_PREFIX)){
+            executeColor(newCommand.substring(COLOR_PREFIX.length()),parameters);
+        }
+        else if (newCommand.startsWith(VIEWPORT_PREFIX)){
+            executeViewport(newCommand.substring(VIEWPORT_PREFIX.length()),parameters);
+        }
+        else if (newCommand.startsWith(SHARD_PREFIX)){
+            executeShard(newCommand.substring(SHARD_PREFIX.length()),parameters);
+        }
+        else if (newCommand.startsWith(PLAY_PREFIX)){
+            executePlay(newCommand.substring(PLAY_PREFIX.length()).trim());
+        }
         else if (newCommand.startsWith(CHANGE_IMAGE_PREFIX)){
             parameters.updateImage(newCommand.substring(6));
         }
         else{
-            System.out.print(INCORRECT_FORMAT_COMMAND);
+            System.out.print(INCORRECT_FORMAT);
+        }
+    }
+    private void executeColor(String levels, Parameters parameters){
+        if (levels.equals(COLOR_OFF)){
+            parameters.setColorLevels(Parameters.NO_COLOR);
+            return;
+        }
+        try {
+            parameters.setColorLevels(Integer.parseInt(levels));
+        } catch (NumberFormatException e) {
+            System.out.print(INCORRECT_FORMAT);
         }
     }
+
+    private void executeViewport(String rectangle, Parameters parameters){
+        if (rectangle.equals(VIEWPORT_OFF)){
+            parameters.clearViewport();
+            return;
+        }
+        String[] values = rectangle.trim().split(" +");
+        if (values.length != 4){
+            System.out.print(INCORRECT_FORMAT);
+            return;
+        }
+        try {
+            parameters.setViewport(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+                    Integer.parseInt(values[2]), Integer.parseInt(values[3]));
+        } catch (NumberFormatException e) {
+            System.out.print(INCORRECT_FORMAT);
+        }
+    }
+
+    private void executeShard(String workers, Parameters parameters){
+        if (workers.equals(SHARD_OFF)){
+            parameters.setShards(0);
+            return;
+        }
+        try {
+            int workerCount = Integer.parseInt(workers);
+            if (workerCount < 0){
+                System.out.print(INCORRECT_FORMAT);
+                return;
+            }
+            parameters.setShards(workerCount);
+        } catch (NumberFormatException e) {
+            System.out.print(INCORRECT_FORMAT);
+        }
+    }
+
+    /**
+     * Shows every frame of a frames file written by the binary output, in order, on the current output.
+     *
+     * @param framesPath the path of the frames file.
+     */
+    private void executePlay(String framesPath){
+        try (BinaryFrameReader frames = new BinaryFrameReader(framesPath)) {
+            while (frames.next()){
+                asciiOutput.out(frames.getFrame());
+            }
+        } catch (IOException e) {
+            System.out.printf(PLAY_FAILED, framesPath);
+        }
+    }
+
     private void executeAddRemove(String newCommand, Parameters parameters, boolean add) {
         if (newCommand.length() == 1) {
             handleSingleChar(newCommand.charAt(0), parameters, add);
@@ -119,20 +302,20 @@ public class Shell {
 
     private void handleSingleChar(char c, Parameters parameters, boolean add) {
         if (add) {
-            parameters.getCharMatcher().addChar(c);
-            return
-            } 
-        parameters.getCharMatcher().removeChar(c);
+            parameters.addChar(c);
+            return;
+        }
+        parameters.removeChar(c);
     }
 
 
     private void handleSpaceWord(Parameters parameters, boolean add) {
         char spaceChar = SPACE;
         if (add) {
-            parameters.getCharMatcher().addChar(spaceChar);
+            parameters.addChar(spaceChar);
             return;
         } 
-        parameters.getCharMatcher().removeChar(spaceChar);
+        parameters.removeChar(spaceChar);
     
     }
 
@@ -141,10 +324,10 @@ public class Shell {
         int maximalLetter = Math.max(newCommand.charAt(0), newCommand.charAt(2));
         for (int i = minimalLetter; i <= maximalLetter; i++) {
             if (add) {
-                parameters.getCharMatcher().addChar((char) i);
+                parameters.addChar((char) i);
             } 
             else {
-            parameters.getCharMatcher().removeChar((char) i);
+            parameters.removeChar((char) i);
             }
         }
     }
@@ -152,7 +335,7 @@ public class Shell {
     private void handleAll(Parameters parameters, boolean add) {
         if (add) {
             for (int i = 32; i < 127; i++) {
-                parameters.getCharMatcher().addChar((char) i);
+                parameters.addChar((char) i);
             }
             return;
         } 
@@ -162,8 +345,56 @@ public class Shell {
     
 
 
+    /**
+     * @param arg the port argument of the render server.
+     * @return the port, or INVALID_PORT if the argument is not a valid port.
+     */
+    private static int parsePort(String arg) {
+        try {
+            int port = Integer.parseInt(arg);
+            return port >= 0 && port <= MAX_PORT ? port : INVALID_PORT;
+        } catch (NumberFormatException e) {
+            return INVALID_PORT;
+        }
+    }
+
+    /**
+     * Runs the interactive shell with no arguments, the render server with "serve [port]",
+     * the commands of a script with "script &lt;path&gt;", or a shard worker process with "worker"
+     * (see ShardWorker). Prints the usage for any other arguments.
+     *
+     * @param args the command line arguments.
+     * @throws IOException if the render server cannot be started.
+     */
     public static void main(String[] args) throws IOException {
-        new Shell().run();
+        if (args.length == 0) {
+            new Shell().run();
+            return;
+        }
+        switch (args[0]) {
+            case SERVE_ARG -> {
+                int port = args.length == 2 ? parsePort(args[1]) :
+                        args.length == 1 ? RenderServer.DEFAULT_PORT : INVALID_PORT;
+                if (port == INVALID_PORT) {
+                    System.out.println(SERVE_USAGE);
+                    return;
+                }
+                RenderServer.start(port);
+            }
+            case SCRIPT_ARG -> {
+                if (args.length != 2) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                try {
+                    new Shell().runScript(args[1]);
+                } catch (IOException e) {
+                    System.out.println(String.format(SCRIPT_FAILED, args[1]));
+                }
+            }
+            case WORKER_ARG -> ShardWorker.run();
+            default -> System.out.println(USAGE);
+        }
     }
 
 }
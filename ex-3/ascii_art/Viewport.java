@@ -0,0 +1,85 @@
+package ascii_art;
+
+import static java.lang.Math.max;
+
+/**
+ * A rectangle of the padded image that is rendered in place of the whole image.
+ * The rectangle is divided into res tile columns and as many tile rows as keep the tiles
+ * about square. Every tile is at least one pixel, so a rectangle narrower than res pixels is
+ * zoomed in by repeating pixels. The whole padded image is a viewport too, whose tiles are the
+ * square tiles of the resolution.
+ *
+ * @param row    the top row of the rectangle in the padded image.
+ * @param col    the left column of the rectangle in the padded image.
+ * @param height the number of rows of the rectangle.
+ * @param width  the number of columns of the rectangle.
+ */
+record Viewport(int row, int col, int height, int width) {
+    /**
+     * The most tile rows of a viewport, so a tall and narrow rectangle cannot make a render of
+     * hundreds of thousands of rows.
+     */
+    static final int MAX_TILE_ROWS = 4096;
+
+    /**
+     * @param width  the width of the padded image.
+     * @param height the height of the padded image.
+     * @return the viewport of the whole padded image.
+     */
+    static Viewport whole(int width, int height) {
+        return new Viewport(0, 0, height, width);
+    }
+
+    /**
+     * @param rows the number of rows to move down.
+     * @param cols the number of columns to move right.
+     * @return the same rectangle moved by the given offset, e.g. from the image into the padded image.
+     */
+    Viewport moved(int rows, int cols) {
+        return new Viewport(row + rows, col + cols, height, width);
+    }
+
+    /**
+     * @param res the number of tile columns.
+     * @return the number of tile rows.
+     */
+    int tileRows(int res) {
+        return max(1, (int) Math.round((double) height * res / width));
+    }
+
+    /**
+     * @param i    the tile row.
+     * @param rows the number of tile rows.
+     * @return the top pixel row of the tile row.
+     */
+    int tileTop(int i, int rows) {
+        return row + (int) ((long) i * height / rows);
+    }
+
+    /**
+     * @param i    the tile row.
+     * @param rows the number of tile rows.
+     * @return the number of pixel rows of the tile row.
+     */
+    int tileHeight(int i, int rows) {
+        return max(1, tileTop(i + 1, rows) - tileTop(i, rows));
+    }
+
+    /**
+     * @param j   the tile column.
+     * @param res the number of tile columns.
+     * @return the left pixel column of the tile column.
+     */
+    int tileLeft(int j, int res) {
+        return col + (int) ((long) j * width / res);
+    }
+
+    /**
+     * @param j   the tile column.
+     * @param res the number of tile columns.
+     * @return the number of pixel columns of the tile column.
+     */
+    int tileWidth(int j, int res) {
+        return max(1, tileLeft(j + 1, res) - tileLeft(j, res));
+    }
+}
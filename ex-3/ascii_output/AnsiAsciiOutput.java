@@ -0,0 +1,283 @@
+package ascii_output;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Output 2D arrays of chars to an ANSI terminal as frames of an animation, in place.
+ * The grid on screen is kept, and every frame after the first only moves the cursor to the
+ * cells that changed and rewrites them, in a single write per frame. Cells are laid out like
+ * ConsoleAsciiOutput, every char followed by a space. Colors are shown as 24-bit foreground
+ * colors. Frames are shown at most at the given rate: a frame that comes too soon waits.
+ * The cursor is left below the grid, on a line cleared for the prompt. Moving the cursor to a
+ * cell only works if the grid, the prompt and the line the command is entered on fit on the
+ * screen without wrapping or scrolling, so when the size of the terminal is unknown or the grid
+ * is too large, every frame is written whole instead, one row per line.
+ */
+public class AnsiAsciiOutput implements AsciiOutput {
+    /**
+     * The frame rate used if none is given.
+     */
+    public static final int DEFAULT_FPS = 30;
+
+    private static final String ESCAPE = "\u001b[";
+    private static final String CLEAR_SCREEN = ESCAPE + "2J";
+    private static final String CLEAR_BELOW = ESCAPE + "J";
+    private static final String RESET_COLOR = ESCAPE + "0m";
+    private static final String MOVE_FORMAT_END = "H";
+    private static final String COLOR_FORMAT = ESCAPE + "38;2;%d;%d;%dm";
+    private static final int BYTE_MASK = 0xFF;
+    /**
+     * The color of a cell that has none, which no 0xRRGGBB color equals.
+     */
+    private static final int NO_COLOR = -1;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    /**
+     * The lines below the grid kept for the prompt and the command, and for the new line the
+     * command is entered with, so entering it does not scroll the grid up.
+     */
+    private static final int PROMPT_LINES = 2;
+    private static final int UNKNOWN_SIZE = 0;
+    private static final String COLUMNS_VARIABLE = "COLUMNS";
+    private static final String LINES_VARIABLE = "LINES";
+    private static final String TERMINAL_DEVICE = "/dev/tty";
+    private static final int STTY_FIELDS = 2;
+
+    private final PrintStream terminal;
+    private final long frameNanos;
+    /**
+     * the size of the terminal in characters, or UNKNOWN_SIZE
+     */
+    private final int columns;
+    private final int lines;
+    private final StringBuilder frame = new StringBuilder();
+    /**
+     * the chars and colors on screen, or null before the first frame
+     */
+    private char[][] shownChars;
+    private int[][] shownColors;
+    private long lastFrame;
+
+    /**
+     * @param fps the most frames to show per second.
+     */
+    public AnsiAsciiOutput(int fps) {
+        this(System.out, fps);
+    }
+
+    /**
+     * @param terminal the stream of the terminal, whose size is taken from the LINES and COLUMNS
+     *                 environment variables or from stty.
+     * @param fps      the most frames to show per second.
+     */
+    public AnsiAsciiOutput(PrintStream terminal, int fps) {
+        this(terminal, fps, terminalSize());
+    }
+
+    private AnsiAsciiOutput(PrintStream terminal, int fps, int[] size) {
+        this(terminal, fps, size[0], size[1]);
+    }
+
+    /**
+     * @param terminal the stream of the terminal.
+     * @param fps      the most frames to show per second, at least 1.
+     * @param columns  the width of the terminal in characters, or 0 if unknown.
+     * @param lines    the height of the terminal in lines, or 0 if unknown.
+     */
+    public AnsiAsciiOutput(PrintStream terminal, int fps, int columns, int lines) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("The frame rate must be positive: " + fps);
+        }
+        this.terminal = terminal;
+        this.frameNanos = NANOS_PER_SECOND / fps;
+        this.columns = columns;
+        this.lines = lines;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        int rows = chars.length;
+        int cols = chars[0].length;
+        frame.setLength(0);
+        if (!fits(rows, cols)) {
+            appendWhole(chars, colors);
+            show();
+            return;
+        }
+        if (shownChars == null || shownChars.length != rows || shownChars[0].length != cols) {
+            shownChars = new char[rows][cols];
+            shownColors = new int[rows][cols];
+            frame.append(CLEAR_SCREEN);
+            for (int i = 0; i < rows; i++) {
+                // differ from every char, so the whole grid is written
+                Arrays.fill(shownChars[i], Character.MAX_VALUE);
+            }
+        }
+        int color = NO_COLOR;
+        for (int i = 0; i < rows; i++) {
+            int j = 0;
+            while (j < cols) {
+                if (!changed(chars, colors, i, j)) {
+                    j++;
+                    continue;
+                }
+                moveTo(i, j);
+                while (j < cols && changed(chars, colors, i, j)) {
+                    int cellColor = colors == null ? NO_COLOR : colors[i][j];
+                    if (cellColor != color) {
+                        appendColor(cellColor);
+                        color = cellColor;
+                    }
+                    frame.append(chars[i][j]).append(' ');
+                    shownChars[i][j] = chars[i][j];
+                    shownColors[i][j] = cellColor;
+                    j++;
+                }
+            }
+        }
+        if (color != NO_COLOR) {
+            frame.append(RESET_COLOR);
+        }
+        moveTo(rows, 0);
+        frame.append(CLEAR_BELOW);
+        show();
+    }
+
+    private void show() {
+        awaitFrameTime();
+        terminal.print(frame);
+        terminal.flush();
+        lastFrame = System.nanoTime();
+    }
+
+    /**
+     * @return true if the size of the terminal is known and the grid and the prompt fit on it.
+     */
+    private boolean fits(int rows, int cols) {
+        return columns != UNKNOWN_SIZE && lines != UNKNOWN_SIZE
+                && 2L * cols <= columns && (long) rows + PROMPT_LINES <= lines;
+    }
+
+    /**
+     * Appends every row of the frame on its own line, without moving the cursor, and forgets the
+     * grid on screen, as it scrolls away.
+     */
+    private void appendWhole(char[][] chars, int[][] colors) {
+        shownChars = null;
+        shownColors = null;
+        int color = NO_COLOR;
+        for (int i = 0; i < chars.length; i++) {
+            for (int j = 0; j < chars[i].length; j++) {
+                int cellColor = colors == null ? NO_COLOR : colors[i][j];
+                if (cellColor != color) {
+                    appendColor(cellColor);
+                    color = cellColor;
+                }
+                frame.append(chars[i][j]).append(' ');
+            }
+            frame.append(System.lineSeparator());
+        }
+        if (color != NO_COLOR) {
+            frame.append(RESET_COLOR);
+        }
+    }
+
+    private boolean changed(char[][] chars, int[][] colors, int row, int col) {
+        return chars[row][col] != shownChars[row][col]
+                || (colors == null ? NO_COLOR : colors[row][col]) != shownColors[row][col];
+    }
+
+    private void moveTo(int row, int col) {
+        // ANSI positions are 1-based, and every cell takes two columns
+        frame.append(ESCAPE).append(row + 1).append(';').append(2 * col + 1).append(MOVE_FORMAT_END);
+    }
+
+    private void appendColor(int rgb) {
+        if (rgb == NO_COLOR) {
+            frame.append(RESET_COLOR);
+            return;
+        }
+        frame.append(String.format(COLOR_FORMAT, rgb >> 16 & BYTE_MASK, rgb >> 8 & BYTE_MASK, rgb & BYTE_MASK));
+    }
+
+    /**
+     * Finds the size of the terminal, from its environment variables where they are set and
+     * otherwise from a single run of stty.
+     *
+     * @return the columns and the lines of the terminal, each UNKNOWN_SIZE if it cannot be found.
+     */
+    private static int[] terminalSize() {
+        int columns = parseSize(System.getenv(COLUMNS_VARIABLE));
+        int lines = parseSize(System.getenv(LINES_VARIABLE));
+        if (columns != UNKNOWN_SIZE && lines != UNKNOWN_SIZE) {
+            return new int[]{columns, lines};
+        }
+        // stty prints the lines, then the columns
+        String[] stty = sttySize().trim().split(" +");
+        if (stty.length == STTY_FIELDS) {
+            lines = lines == UNKNOWN_SIZE ? parseSize(stty[0]) : lines;
+            columns = columns == UNKNOWN_SIZE ? parseSize(stty[1]) : columns;
+        }
+        return new int[]{columns, lines};
+    }
+
+    private static int parseSize(String size) {
+        if (size == null) {
+            return UNKNOWN_SIZE;
+        }
+        try {
+            return Integer.parseInt(size.trim());
+        } catch (NumberFormatException e) {
+            return UNKNOWN_SIZE;
+        }
+    }
+
+    /**
+     * @return the output of "stty size" on the terminal, or an empty string if it cannot be run.
+     */
+    private static String sttySize() {
+        Process stty = null;
+        try {
+            stty = new ProcessBuilder("stty", "size")
+                    .redirectInput(new File(TERMINAL_DEVICE))
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(stty.getInputStream()))) {
+                String size = output.readLine();
+                stty.waitFor();
+                return size == null ? "" : size;
+            }
+        } catch (IOException e) {
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } finally {
+            if (stty != null) {
+                stty.destroyForcibly();
+            }
+        }
+    }
+
+    private void awaitFrameTime() {
+        long wait = lastFrame + frameNanos - System.nanoTime();
+        if (lastFrame == 0 || wait <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(wait / NANOS_PER_MILLI, (int) (wait % NANOS_PER_MILLI));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -10,4 +10,13 @@ public interface AsciiOutput {
      * Output the specified 2D array of chars
      */
     void out(char[][] chars);
+
+    /**
+     * Output the specified 2D array of chars, where every char has the matching
+     * 0xRRGGBB color of the colors array.
+     * Outputs that cannot show colors ignore them.
+     */
+    default void out(char[][] chars, int[][] colors) {
+        out(chars);
+    }
 }
@@ -0,0 +1,131 @@
+package ascii_output;
+
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars through another output on a background thread, so the caller
+ * does not wait for the output's I/O.
+ * A single writer thread hands the renders to the wrapped output in order. The queue between
+ * them holds one render: a render that arrives while the previous one is still waiting replaces
+ * it, so when renders come faster than they can be written, only the latest is written.
+ * The chars and colors are copied, since the caller may reuse its arrays for the next render.
+ * A render that fails to be written is logged and skipped, so it does not stop the later renders.
+ */
+public class AsyncAsciiOutput implements AsciiOutput {
+    private final AsciiOutput output;
+
+    /**
+     * The render waiting to be written, or null.
+     */
+    private Render pending;
+    /**
+     * Whether the writer is writing a render right now.
+     */
+    private boolean writing;
+    private boolean closed;
+    /**
+     * Whether the writer thread has ended, after closing or because it was interrupted or failed.
+     */
+    private boolean stopped;
+
+    private record Render(char[][] chars, int[][] colors) {}
+
+    /**
+     * @param output the output to write the renders to.
+     */
+    public AsyncAsciiOutput(AsciiOutput output) {
+        this.output = output;
+        Thread.ofPlatform().daemon().name("ascii-output").start(this::writeRenders);
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        Render render = new Render(copy(chars), colors == null ? null : copy(colors));
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Output is closed");
+            }
+            pending = render;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the last render was written and stops the writer thread.
+     * Does not wait for renders that a writer thread which has ended can no longer write.
+     * Renders given after closing are rejected.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            while ((pending != null || writing) && !stopped) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeRenders() {
+        try {
+            while (true) {
+                Render render;
+                synchronized (this) {
+                    while (pending == null) {
+                        if (closed) {
+                            return;
+                        }
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    render = pending;
+                    pending = null;
+                    writing = true;
+                }
+                try {
+                    output.out(render.chars(), render.colors());
+                } catch (RuntimeException e) {
+                    Logger.getGlobal().severe(String.format("Failed to write a render: %s", e));
+                } finally {
+                    synchronized (this) {
+                        writing = false;
+                        notifyAll();
+                    }
+                }
+            }
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private static char[][] copy(char[][] chars) {
+        char[][] copied = new char[chars.length][];
+        for (int i = 0; i < chars.length; i++) {
+            copied[i] = chars[i].clone();
+        }
+        return copied;
+    }
+
+    private static int[][] copy(int[][] colors) {
+        int[][] copied = new int[colors.length][];
+        for (int i = 0; i < colors.length; i++) {
+            copied[i] = colors[i].clone();
+        }
+        return copied;
+    }
+}
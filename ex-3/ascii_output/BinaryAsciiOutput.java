@@ -0,0 +1,213 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Output 2D arrays of chars to a compact binary file of frames, one frame per output, that
+ * BinaryFrameReader plays back.
+ * The file starts with MAGIC, followed by the frames. A frame is its length in bytes, then:
+ * <ul>
+ *     <li>the number of rows and columns, as ints;</li>
+ *     <li>its type, KEY_FRAME or DELTA_FRAME, as a byte;</li>
+ *     <li>its charset: the number of chars as an int, then the chars;</li>
+ *     <li>the rows, each as runs of equal cells: the length of the run as a varint (7 bits per
+ *     byte, low bits first, the high bit set on all but the last byte), then the index of the
+ *     char of the run in the charset, in one byte if the charset has at most 255 chars and in
+ *     two bytes otherwise.</li>
+ * </ul>
+ * A delta frame is encoded against the previous frame, which has the same dimensions: the
+ * index equal to the size of its charset marks a run of cells that did not change, and the
+ * charset only holds the chars of the cells that did.
+ * Colors are not stored.
+ */
+public class BinaryAsciiOutput implements AsciiOutput {
+    /**
+     * The first int of a frames file.
+     */
+    static final int MAGIC = 0x41534346;
+    static final byte KEY_FRAME = 0;
+    static final byte DELTA_FRAME = 1;
+    /**
+     * The largest charset whose indices, and the index of unchanged cells, fit in a byte.
+     */
+    static final int MAX_NARROW_CHARSET = 255;
+    static final int VARINT_BITS = 7;
+    static final int VARINT_MASK = (1 << VARINT_BITS) - 1;
+    static final int VARINT_MORE = 1 << VARINT_BITS;
+    /**
+     * The most bytes a run takes: a 5 byte varint and a 2 byte index.
+     */
+    static final int MAX_RUN_BYTES = 7;
+    /**
+     * The bytes of the frame length, dimensions, type and charset size.
+     */
+    static final int FRAME_HEADER_BYTES = 4 * Integer.BYTES + 1;
+    /**
+     * The most bytes of a frame, the largest array the JVM allocates.
+     */
+    static final int MAX_FRAME_BYTES = Integer.MAX_VALUE - 8;
+    private static final int NO_INDEX = -1;
+
+    private final Path path;
+    private final boolean delta;
+    /**
+     * the index of every char in the charset of the frame being encoded, or NO_INDEX
+     */
+    private final int[] indexOf = new int[Character.MAX_VALUE + 1];
+    private char[] charset = new char[MAX_NARROW_CHARSET];
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+    /**
+     * the cells of the previous frame, or null before the first frame
+     */
+    private char[][] previous;
+
+    /**
+     * Opens the frames file to append frames to, so the frames already in it are kept.
+     * The file is created if it does not exist, and replaced if it is not a frames file.
+     *
+     * @param filename the path of the frames file.
+     * @param delta    whether to encode every frame against the previous frame when they have the same dimensions.
+     */
+    public BinaryAsciiOutput(String filename, boolean delta) {
+        this.path = Path.of(filename);
+        this.delta = delta;
+        Arrays.fill(indexOf, NO_INDEX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the magic is whole or the file ends
+            }
+            if (magic.hasRemaining() || magic.getInt(0) != MAGIC) {
+                channel.truncate(0);
+                channel.write(magic.clear().putInt(MAGIC).flip(), 0);
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Appends the chars to the frames file as a frame.
+     */
+    @Override
+    public void out(char[][] chars) {
+        try {
+            encode(chars);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\": %s", path, e.getMessage()));
+        }
+    }
+
+    /**
+     * Encodes the chars as the next frame into the buffer.
+     *
+     * @throws IOException if the frame could take more bytes than a buffer holds.
+     */
+    private void encode(char[][] chars) throws IOException {
+        int rows = chars.length;
+        int cols = chars[0].length;
+        // checked against the largest charset, before any char is given an index
+        if (FRAME_HEADER_BYTES + (long) indexOf.length * Character.BYTES + (long) rows * cols * MAX_RUN_BYTES
+                > MAX_FRAME_BYTES) {
+            throw new IOException(String.format(
+                    "A frame of %dx%d chars may take more than the %d bytes of a buffer", rows, cols, MAX_FRAME_BYTES));
+        }
+        boolean isDelta = delta && previous != null && previous.length == rows && previous[0].length == cols;
+        int charsetSize = collectCharset(chars, isDelta);
+        boolean narrow = charsetSize <= MAX_NARROW_CHARSET;
+        int maxBytes = FRAME_HEADER_BYTES + charsetSize * Character.BYTES + rows * cols * MAX_RUN_BYTES;
+        if (buffer.capacity() < maxBytes) {
+            buffer = ByteBuffer.allocate(maxBytes);
+        }
+        buffer.clear();
+        buffer.putInt(0).putInt(rows).putInt(cols).put(isDelta ? DELTA_FRAME : KEY_FRAME).putInt(charsetSize);
+        for (int i = 0; i < charsetSize; i++) {
+            buffer.putChar(charset[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            int runStart = 0;
+            int runIndex = cellIndex(chars, i, 0, isDelta, charsetSize);
+            for (int j = 1; j <= cols; j++) {
+                int index = j < cols ? cellIndex(chars, i, j, isDelta, charsetSize) : NO_INDEX;
+                if (index != runIndex) {
+                    putRun(j - runStart, runIndex, narrow);
+                    runStart = j;
+                    runIndex = index;
+                }
+            }
+        }
+        buffer.putInt(0, buffer.position() - Integer.BYTES);
+        buffer.flip();
+        for (int i = 0; i < charsetSize; i++) {
+            indexOf[charset[i]] = NO_INDEX;
+        }
+        keepPrevious(chars);
+    }
+
+    /**
+     * Gives an index to every char of the frame, or in a delta frame of every changed cell.
+     *
+     * @return the size of the charset.
+     */
+    private int collectCharset(char[][] chars, boolean isDelta) {
+        int charsetSize = 0;
+        for (int i = 0; i < chars.length; i++) {
+            for (int j = 0; j < chars[i].length; j++) {
+                char c = chars[i][j];
+                if (indexOf[c] != NO_INDEX || (isDelta && previous[i][j] == c)) {
+                    continue;
+                }
+                if (charsetSize == charset.length) {
+                    charset = Arrays.copyOf(charset, charset.length * 2);
+                }
+                indexOf[c] = charsetSize;
+                charset[charsetSize++] = c;
+            }
+        }
+        return charsetSize;
+    }
+
+    private int cellIndex(char[][] chars, int row, int col, boolean isDelta, int charsetSize) {
+        if (isDelta && previous[row][col] == chars[row][col]) {
+            return charsetSize;
+        }
+        return indexOf[chars[row][col]];
+    }
+
+    private void putRun(int length, int index, boolean narrow) {
+        while (length > VARINT_MASK) {
+            buffer.put((byte) (length & VARINT_MASK | VARINT_MORE));
+            length >>>= VARINT_BITS;
+        }
+        buffer.put((byte) length);
+        if (narrow) {
+            buffer.put((byte) index);
+        } else {
+            buffer.putChar((char) index);
+        }
+    }
+
+    private void keepPrevious(char[][] chars) {
+        if (!delta) {
+            return;
+        }
+        if (previous == null || previous.length != chars.length || previous[0].length != chars[0].length) {
+            previous = new char[chars.length][chars[0].length];
+        }
+        for (int i = 0; i < chars.length; i++) {
+            System.arraycopy(chars[i], 0, previous[i], 0, chars[i].length);
+        }
+    }
+}
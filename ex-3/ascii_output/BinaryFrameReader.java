@@ -0,0 +1,185 @@
+package ascii_output;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Plays back the frames of a file written by BinaryAsciiOutput, one frame at a time.
+ * Every frame is read whole into a buffer and decoded into a grid of chars; both are kept
+ * between frames and only replaced when a frame is larger, so playing back a file allocates
+ * nothing per frame, let alone per char.
+ * Every field of a frame is checked before it is used, so a corrupt file fails with an IOException.
+ */
+public class BinaryFrameReader implements Closeable {
+    private static final String CORRUPT_FILE = "Corrupt frames file: %s";
+    /**
+     * The most bytes of a varint, enough for any int.
+     */
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private final FileChannel channel;
+    /**
+     * the size of the file when it was opened, where playing back ends
+     */
+    private final long end;
+    private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+    private ByteBuffer frameBuffer = ByteBuffer.allocate(0);
+    private char[] charset = new char[BinaryAsciiOutput.MAX_NARROW_CHARSET];
+    private char[][] frame = new char[0][];
+
+    /**
+     * Opens a frames file.
+     *
+     * @param filename the path of the frames file.
+     * @throws IOException if the file cannot be read or is not a frames file.
+     */
+    public BinaryFrameReader(String filename) throws IOException {
+        channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        end = channel.size();
+        length.clear();
+        if (!readFully(length) || length.getInt(0) != BinaryAsciiOutput.MAGIC) {
+            channel.close();
+            throw new IOException(String.format("\"%s\" is not a frames file", filename));
+        }
+    }
+
+    /**
+     * Reads the next frame. Only the frames the file had when it was opened are read, so a file
+     * that is being written to, even with the frames read from it, is still played back to an end.
+     *
+     * @return true if a frame was read; false at the end of the file.
+     * @throws IOException if the file cannot be read, ends in the middle of a frame or is corrupt.
+     */
+    public boolean next() throws IOException {
+        length.clear();
+        if (channel.position() >= end || !readFully(length)) {
+            return false;
+        }
+        int frameBytes = length.getInt(0);
+        if (frameBytes < BinaryAsciiOutput.FRAME_HEADER_BYTES - Integer.BYTES) {
+            throw corrupt("frame of " + frameBytes + " bytes");
+        }
+        if (frameBytes > end - channel.position()) {
+            throw new EOFException("Frames file ends in the middle of a frame");
+        }
+        if (frameBuffer.capacity() < frameBytes) {
+            frameBuffer = ByteBuffer.allocate(frameBytes);
+        }
+        frameBuffer.clear().limit(frameBytes);
+        if (!readFully(frameBuffer)) {
+            throw new EOFException("Frames file ends in the middle of a frame");
+        }
+        frameBuffer.flip();
+        try {
+            decode(frameBuffer);
+        } catch (BufferUnderflowException e) {
+            throw corrupt("frame ends before its last row");
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the last frame read.
+     *
+     * @return the chars of the frame, overwritten by the next frame.
+     */
+    public char[][] getFrame() {
+        return frame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void decode(ByteBuffer buffer) throws IOException {
+        int rows = buffer.getInt();
+        int cols = buffer.getInt();
+        byte type = buffer.get();
+        int charsetSize = buffer.getInt();
+        // the writer rejects frames whose runs may not fit in a buffer, and every row has a run
+        if (rows <= 0 || cols <= 0
+                || (long) rows * cols * BinaryAsciiOutput.MAX_RUN_BYTES > BinaryAsciiOutput.MAX_FRAME_BYTES) {
+            throw corrupt(String.format("frame of %dx%d chars", rows, cols));
+        }
+        if (type != BinaryAsciiOutput.KEY_FRAME && type != BinaryAsciiOutput.DELTA_FRAME) {
+            throw corrupt("frame of type " + type);
+        }
+        if (charsetSize < 0 || charsetSize > Character.MAX_VALUE + 1
+                || charsetSize > buffer.remaining() / Character.BYTES) {
+            throw corrupt("charset of " + charsetSize + " chars");
+        }
+        if (type == BinaryAsciiOutput.DELTA_FRAME && (frame.length != rows || frame[0].length != cols)) {
+            throw new IOException("Delta frame does not match the previous frame");
+        }
+        if (frame.length != rows || frame[0].length != cols) {
+            frame = new char[rows][cols];
+        }
+        if (charset.length < charsetSize) {
+            charset = new char[charsetSize];
+        }
+        for (int i = 0; i < charsetSize; i++) {
+            charset[i] = buffer.getChar();
+        }
+        boolean narrow = charsetSize <= BinaryAsciiOutput.MAX_NARROW_CHARSET;
+        // the index past the charset marks unchanged cells, which only delta frames have
+        int maxIndex = type == BinaryAsciiOutput.DELTA_FRAME ? charsetSize : charsetSize - 1;
+        for (int i = 0; i < rows; i++) {
+            int col = 0;
+            while (col < cols) {
+                int runLength = getVarint(buffer);
+                int index = narrow ? Byte.toUnsignedInt(buffer.get()) : buffer.getChar();
+                if (runLength <= 0 || runLength > cols - col) {
+                    throw corrupt(String.format("run of %d chars at column %d of %d", runLength, col, cols));
+                }
+                if (index > maxIndex) {
+                    throw corrupt(String.format("char %d of a charset of %d chars", index, charsetSize));
+                }
+                if (index < charsetSize) {
+                    Arrays.fill(frame[i], col, col + runLength, charset[index]);
+                }
+                col += runLength;
+            }
+        }
+    }
+
+    private static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift == MAX_VARINT_BYTES * BinaryAsciiOutput.VARINT_BITS) {
+                throw corrupt("varint of more than " + MAX_VARINT_BYTES + " bytes");
+            }
+            b = buffer.get();
+            value |= (b & BinaryAsciiOutput.VARINT_MASK) << shift;
+            shift += BinaryAsciiOutput.VARINT_BITS;
+        } while ((b & BinaryAsciiOutput.VARINT_MORE) != 0);
+        return value;
+    }
+
+    private static IOException corrupt(String detail) {
+        return new IOException(String.format(CORRUPT_FILE, detail));
+    }
+
+    /**
+     * Reads from the file until the buffer is full.
+     *
+     * @return false if the file ended first.
+     */
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Output a 2D array of colored chars to an HTML file viewable in a web browser.
+ * Neighbouring chars of the same color, including across line ends, are merged into a
+ * single span, so a quantized palette keeps the page small even at high resolutions.
+ */
+public class ColorHtmlAsciiOutput extends HtmlAsciiOutput {
+    private static final String SPAN_START = "<span style=\"color:#%06X\">";
+    private static final String SPAN_END = "</span>";
+
+    /**
+     * Constructs an output writing to the given HTML file with the given font.
+     *
+     * @param filename the path of the HTML file.
+     * @param fontName the font of the chars.
+     */
+    public ColorHtmlAsciiOutput(String filename, String fontName) {
+        super(filename, fontName);
+    }
+
+    @Override
+    void writeChars(Writer writer, char[][] chars, int[][] colors) throws IOException {
+        if (colors == null) {
+            super.writeChars(writer, chars, null);
+            return;
+        }
+        boolean open = false;
+        int spanColor = 0;
+        for (int y = 0; y < chars.length; y++) {
+            for (int x = 0; x < chars[y].length; x++) {
+                if (!open || colors[y][x] != spanColor) {
+                    if (open) {
+                        writer.write(SPAN_END);
+                    }
+                    spanColor = colors[y][x];
+                    writer.write(String.format(SPAN_START, spanColor));
+                    open = true;
+                }
+                writeChar(writer, chars[y][x]);
+            }
+            writer.write(System.lineSeparator());
+        }
+        if (open) {
+            writer.write(SPAN_END);
+        }
+    }
+}
@@ -1,16 +1,38 @@
 package ascii_output;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
 /**
  * Output a 2D array of chars to the console.
  * @author Dan Nirel
  */public class ConsoleAsciiOutput implements AsciiOutput{
     @Override
     public void out(char[][] chars) {
+        PrintWriter writer = new PrintWriter(System.out);
+        try {
+            write(writer, chars);
+        } catch (IOException e) {
+            // a PrintWriter never throws
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the chars as console text, every char followed by a space and every row by a line end.
+     *
+     * @param writer the writer to write the text to.
+     * @param chars  the chars to write.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Writer writer, char[][] chars) throws IOException {
         for (int y = 0; y < chars.length ; y++) {
             for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+                writer.write(chars[y][x]);
+                writer.write(' ');
             }
-            System.out.println();
+            writer.write(System.lineSeparator());
         }
     }
 }
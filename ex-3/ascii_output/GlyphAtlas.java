@@ -0,0 +1,100 @@
+package ascii_output;
+
+import image_char_matching.CharConverter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The rasterized glyphs of the characters, in a single size, as packed 0xRRGGBB pixels of the
+ * character in a color on a white background, so drawing text is reduced to copying rows of pixels.
+ * Every char is rasterized once with the font of CharConverter into a coverage mask, and the
+ * glyph of a char in a color is built from its mask on first use. At most MAX_CACHED_GLYPHS
+ * colored glyphs are kept, so quantized colors do not grow the atlas without bound.
+ */
+class GlyphAtlas {
+    private static final int WHITE_RGB = 0xFFFFFF;
+    private static final int ALPHA_SHIFT = 24;
+    private static final int COVERED = -1;
+    private static final int UNCOVERED = 0;
+    static final int MAX_CACHED_GLYPHS = 4096;
+
+    private final int glyphSize;
+    /**
+     * the coverage mask of every char, COVERED or UNCOVERED per pixel, row by row
+     */
+    private final Map<Character,int[]> masks = new ConcurrentHashMap<>();
+    /**
+     * the glyph of every char and color, keyed by the char in the high bits and the color in the low bits
+     */
+    private final Map<Long,int[]> glyphs = new ConcurrentHashMap<>();
+
+    /**
+     * @param glyphSize the side of a glyph in pixels.
+     */
+    GlyphAtlas(int glyphSize) {
+        this.glyphSize = glyphSize;
+    }
+
+    /**
+     * @return the side of a glyph in pixels.
+     */
+    int getGlyphSize() {
+        return glyphSize;
+    }
+
+    /**
+     * Draws the glyph of the given char in the given color, building it on first use.
+     *
+     * @param c        the char.
+     * @param rgb      the color of the char as a packed 0xRRGGBB value.
+     * @param pixels   the packed 0xRRGGBB pixels to draw into, row by row.
+     * @param offset   the index of the top left pixel of the glyph in pixels.
+     * @param scanline the number of pixels in a row of pixels.
+     */
+    void draw(char c, int rgb, int[] pixels, int offset, int scanline) {
+        int[] glyph = glyph(c, rgb & WHITE_RGB);
+        for (int y = 0; y < glyphSize; y++) {
+            System.arraycopy(glyph, y * glyphSize, pixels, offset + y * scanline, glyphSize);
+        }
+    }
+
+    /**
+     * @return the number of colored glyphs currently kept.
+     */
+    int cachedGlyphs() {
+        return glyphs.size();
+    }
+
+    private int[] glyph(char c, int rgb) {
+        long key = (long) c << Integer.SIZE | rgb;
+        int[] glyph = glyphs.get(key);
+        if (glyph != null) {
+            return glyph;
+        }
+        if (glyphs.size() >= MAX_CACHED_GLYPHS) {
+            // more colors than fit, start over rather than track the use of every glyph
+            glyphs.clear();
+        }
+        return glyphs.computeIfAbsent(key, k -> color(masks.computeIfAbsent(c, this::rasterize), rgb));
+    }
+
+    private int[] color(int[] mask, int rgb) {
+        // white where the mask is uncovered and the color where it is covered, without branching
+        int difference = WHITE_RGB ^ rgb;
+        int[] glyph = new int[mask.length];
+        for (int i = 0; i < mask.length; i++) {
+            glyph[i] = WHITE_RGB ^ (mask[i] & difference);
+        }
+        return glyph;
+    }
+
+    private int[] rasterize(char c) {
+        int[] coverage = new int[glyphSize * glyphSize];
+        CharConverter.convertToImage(c, glyphSize).getRGB(0, 0, glyphSize, glyphSize, coverage, 0, glyphSize);
+        for (int i = 0; i < coverage.length; i++) {
+            coverage[i] = coverage[i] >>> ALPHA_SHIFT == 0 ? UNCOVERED : COVERED;
+        }
+        return coverage;
+    }
+}
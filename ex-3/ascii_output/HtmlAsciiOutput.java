@@ -1,8 +1,11 @@
 package ascii_output;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.logging.Logger;
 
 /**
@@ -12,6 +15,7 @@ import java.util.logging.Logger;
 public class HtmlAsciiOutput implements AsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final String PARTIAL_EXTENSION = ".partial";
 
     private final String fontName;
     private final String filename;
@@ -23,41 +27,103 @@ public class HtmlAsciiOutput implements AsciiOutput {
 
     @Override
     public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
-                "<!DOCTYPE html>\n"+
-                "<html>\n"+
-                "<body style=\""+
-                    "\tCOLOR:#000000;"+
-                    "\tTEXT-ALIGN:center;"+
-                    "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
-                    "\twhite-space:pre;"+
-                    "\tFONT-FAMILY:%s;"+
-                    "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
-                    "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
-                }
-                writer.newLine();
+        out(chars, null);
+    }
+
+    /**
+     * Writes the page under a temporary name and renames it over the file, so a browser that
+     * reloads the file while it is being written still sees the previous page in whole.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        Path target = Path.of(filename);
+        Path partial = Path.of(filename + PARTIAL_EXTENSION);
+        try {
+            try(BufferedWriter writer = Files.newBufferedWriter(partial)) {
+                writeStart(writer, fontName, chars[0].length);
+                writeChars(writer, chars, colors);
+                writeEnd(writer);
             }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         } catch(IOException e) {
             Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
         }
     }
+
+    /**
+     * Writes the whole HTML page of the chars without colors, e.g. as the body of an HTTP response.
+     *
+     * @param writer   the writer to write the page to.
+     * @param fontName the font of the chars.
+     * @param chars    the chars to write.
+     * @throws IOException if writing fails.
+     */
+    public static void write(Writer writer, String fontName, char[][] chars) throws IOException {
+        writeStart(writer, fontName, chars[0].length);
+        writePlainChars(writer, chars);
+        writeEnd(writer);
+    }
+
+    private static void writeStart(Writer writer, String fontName, int cols) throws IOException {
+        writer.write(String.format(
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                fontName, BASE_FONT_SIZE/cols, BASE_LINE_SPACING));
+    }
+
+    private static void writeEnd(Writer writer) throws IOException {
+        writer.write(
+            "</p>\n"+
+            "</body>\n"+
+            "</html>\n");
+    }
+
+    /**
+     * Writes the body of the paragraph, one line per row of chars.
+     *
+     * @param writer the writer of the HTML file.
+     * @param chars  the chars to write.
+     * @param colors the color of every char, ignored by this output.
+     * @throws IOException if writing fails.
+     */
+    void writeChars(Writer writer, char[][] chars, int[][] colors) throws IOException {
+        writePlainChars(writer, chars);
+    }
+
+    private static void writePlainChars(Writer writer, char[][] chars) throws IOException {
+        for(int y = 0 ; y < chars.length ; y++) {
+            for (int x = 0; x < chars[y].length ; x++) {
+                writeChar(writer, chars[y][x]);
+            }
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Writes a single char, escaped for HTML.
+     *
+     * @param writer the writer of the HTML file.
+     * @param c      the char to write.
+     * @throws IOException if writing fails.
+     */
+    static void writeChar(Writer writer, char c) throws IOException {
+        String htmlRep;
+        switch(c) {
+            case '<': htmlRep = "&lt;";  break;
+            case '>': htmlRep = "&gt;";  break;
+            case '&': htmlRep = "&amp;"; break;
+            default:  htmlRep = String.valueOf(c);
+        }
+        writer.write(htmlRep);
+    }
 }
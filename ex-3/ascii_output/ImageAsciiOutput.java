@@ -0,0 +1,91 @@
+package ascii_output;
+
+import image_char_matching.CharConverter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Output a 2D array of chars to an image file, e.g. a PNG or JPEG thumbnail.
+ * Every char is drawn by copying the rows of its glyph in the color of the char from a glyph atlas
+ * straight into the pixels of the image, the rows of chars in parallel, and the image is encoded once.
+ */
+public class ImageAsciiOutput implements AsciiOutput {
+    private static final int BLACK_RGB = 0x000000;
+    private static final String PARTIAL_EXTENSION = ".partial";
+
+    private final String filename;
+    private final String formatName;
+    private final GlyphAtlas atlas;
+
+    /**
+     * @param filename   the path of the image file.
+     * @param formatName the ImageIO format of the image file, e.g. "png" or "jpeg".
+     * @param glyphSize  the side of a char in pixels.
+     */
+    public ImageAsciiOutput(String filename, String formatName, int glyphSize) {
+        this.filename = filename;
+        this.formatName = formatName;
+        this.atlas = new GlyphAtlas(glyphSize);
+    }
+
+    /**
+     * @param filename   the path of the image file.
+     * @param formatName the ImageIO format of the image file, e.g. "png" or "jpeg".
+     */
+    public ImageAsciiOutput(String filename, String formatName) {
+        this(filename, formatName, CharConverter.DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        out(chars, null);
+    }
+
+    /**
+     * Draws the chars, in their colors if given and in black otherwise, and writes the image under
+     * a temporary name that is renamed over the file, so a reader never sees a partial image.
+     */
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        Path target = Path.of(filename);
+        Path partial = Path.of(filename + PARTIAL_EXTENSION);
+        try {
+            if (!ImageIO.write(draw(chars, colors), formatName, partial.toFile())) {
+                throw new IOException("No writer for " + formatName);
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch(IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    /**
+     * Draws the chars into a new image.
+     *
+     * @param chars  the chars to draw.
+     * @param colors the 0xRRGGBB color of every char, or null to draw them in black.
+     * @return the image of the chars.
+     */
+    public BufferedImage draw(char[][] chars, int[][] colors) {
+        int glyphSize = atlas.getGlyphSize();
+        int width = chars[0].length * glyphSize;
+        BufferedImage image = new BufferedImage(width, chars.length * glyphSize, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        IntStream.range(0, chars.length).parallel().forEach(row -> {
+            int rowStart = row * glyphSize * width;
+            for (int col = 0; col < chars[row].length; col++) {
+                atlas.draw(chars[row][col], colors == null ? BLACK_RGB : colors[row][col], pixels,
+                        rowStart + col * glyphSize, width);
+            }
+        });
+        return image;
+    }
+}
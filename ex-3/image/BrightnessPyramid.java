@@ -0,0 +1,136 @@
+package image;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A min/max pyramid of the grey values of an image whose dimensions are powers of 2.
+ * Level 0 holds the grey value of every pixel, and every cell of level k holds the darkest
+ * and brightest grey value of the 2^k x 2^k block of pixels it covers, so the brightness
+ * range of any aligned power-of-2 block is known in constant time.
+ */
+public class BrightnessPyramid {
+    private final int width;
+    private final int height;
+    /**
+     * minimum[k].get((row * (width >> k)) + col) is the darkest grey value in the block (row, col) of level k
+     */
+    private final FloatBuffer[] minimum;
+    /**
+     * maximum[k].get((row * (width >> k)) + col) is the brightest grey value in the block (row, col) of level k
+     */
+    private final FloatBuffer[] maximum;
+
+    /**
+     * Builds the pyramid of the given image.
+     * The pyramid of an off-heap image is kept off-heap too (see OffHeapTables). Level 0 takes as
+     * many bytes as the pixels of the image, so every level fits in a single buffer.
+     *
+     * @param image an image whose width and height are powers of 2, e.g. a padded image.
+     */
+    public BrightnessPyramid(Image image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        int levels = Integer.numberOfTrailingZeros(Math.min(width, height)) + 1;
+        minimum = new FloatBuffer[levels];
+        maximum = new FloatBuffer[levels];
+        // level 0 is shared by the minimum and the maximum
+        long[] tableBytes = new long[2 * levels - 1];
+        for (int k = 0; k < levels; k++) {
+            tableBytes[k] = (long) (width >> k) * (height >> k) * Float.BYTES;
+            if (k > 0) {
+                tableBytes[levels + k - 1] = tableBytes[k];
+            }
+        }
+        ByteBuffer[] tables = image.isOffHeap() ? OffHeapTables.allocate(tableBytes) : null;
+        for (int k = 0; k < levels; k++) {
+            minimum[k] = level(tables, tableBytes, k);
+            maximum[k] = k == 0 ? minimum[0] : level(tables, tableBytes, levels + k - 1);
+        }
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                minimum[0].put(i * width + j, (float) ImageUtilities.greyPixel(image.getRGB(i, j)));
+            }
+        }
+        for (int k = 1; k < levels; k++) {
+            int levelWidth = width >> k;
+            int levelHeight = height >> k;
+            int belowWidth = levelWidth * 2;
+            FloatBuffer minBelow = minimum[k - 1];
+            FloatBuffer maxBelow = maximum[k - 1];
+            for (int row = 0; row < levelHeight; row++) {
+                for (int col = 0; col < levelWidth; col++) {
+                    int topLeft = 2 * row * belowWidth + 2 * col;
+                    int bottomLeft = topLeft + belowWidth;
+                    minimum[k].put(row * levelWidth + col, Math.min(
+                            Math.min(minBelow.get(topLeft), minBelow.get(topLeft + 1)),
+                            Math.min(minBelow.get(bottomLeft), minBelow.get(bottomLeft + 1))));
+                    maximum[k].put(row * levelWidth + col, Math.max(
+                            Math.max(maxBelow.get(topLeft), maxBelow.get(topLeft + 1)),
+                            Math.max(maxBelow.get(bottomLeft), maxBelow.get(bottomLeft + 1))));
+                }
+            }
+        }
+    }
+
+    private static FloatBuffer level(ByteBuffer[] tables, long[] tableBytes, int table) {
+        if (tables != null) {
+            return tables[table].asFloatBuffer();
+        }
+        return FloatBuffer.wrap(new float[(int) (tableBytes[table] / Float.BYTES)]);
+    }
+
+    /**
+     * @return the width of level 0, the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of level 0, the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves level 0 of the pyramid, the luminance plane of the image.
+     *
+     * @return the grey value of every pixel, row after row, not to be modified or repositioned.
+     */
+    public FloatBuffer getGreys() {
+        return minimum[0];
+    }
+
+    /**
+     * @return the number of levels, level 0 being single pixels.
+     */
+    public int getLevels() {
+        return minimum.length;
+    }
+
+    /**
+     * Retrieves the darkest grey value of a block.
+     *
+     * @param level the level of the block, whose side is 2^level pixels.
+     * @param row   the row of the block within the level.
+     * @param col   the column of the block within the level.
+     * @return the darkest grey value in the block.
+     */
+    public float getMin(int level, int row, int col) {
+        return minimum[level].get(row * (width >> level) + col);
+    }
+
+    /**
+     * Retrieves the brightest grey value of a block.
+     *
+     * @param level the level of the block, whose side is 2^level pixels.
+     * @param row   the row of the block within the level.
+     * @param col   the column of the block within the level.
+     * @return the brightest grey value in the block.
+     */
+    public float getMax(int level, int row, int col) {
+        return maximum[level].get(row * (width >> level) + col);
+    }
+}
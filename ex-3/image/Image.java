@@ -5,6 +5,8 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
 
 /**
  * A package-private class of the package image.
@@ -14,14 +16,83 @@ public class Image {
     private static final int ONEPRIME = 5;
     private static final int ANOTHERPRIME = 11;
 
+    /**
+     * Images with at least this many pixels are kept off-heap by open.
+     */
+    static final long OFF_HEAP_PIXELS = 1L << 24;
+
+    /**
+     * The pixels of an on-heap image, by row and column, or null for an off-heap image.
+     */
     private final Color[][] pixelArray;
+    /**
+     * The packed ARGB pixels of an off-heap image, row after row, or null for an on-heap image.
+     */
+    private final IntBuffer raster;
     private final int width;
     private final int height;
 
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
+        this(ImageIO.read(new File(filename)));
+    }
+
+    /**
+     * Opens the image file, keeping large images off the Java heap.
+     * Images of at least OFF_HEAP_PIXELS pixels are decoded once into a raw raster file next to
+     * the image (see RasterFile), which is memory-mapped now and by every later open of the same
+     * file without decoding it again. Smaller images are read like Image(String).
+     *
+     * @param filename the path of the image file.
+     * @return the image.
+     * @throws IOException if the image cannot be read.
+     */
+    public static Image open(String filename) throws IOException {
+        File file = new File(filename);
+        Image cached = RasterFile.mapIfFresh(file);
+        if (cached != null) {
+            return cached;
+        }
+        BufferedImage im = ImageIO.read(file);
+        if (im == null) {
+            throw new IOException("Unsupported image format");
+        }
+        if ((long) im.getWidth() * im.getHeight() < OFF_HEAP_PIXELS) {
+            return new Image(im);
+        }
+        return RasterFile.decodeOnce(im, file);
+    }
+
+    /**
+     * Maps a band of rows of a raster file written by saveRaster. Only the band is mapped, so
+     * a process can work on its band of an image larger than its heap.
+     *
+     * @param filename the path of the raster file.
+     * @param firstRow the first row of the band.
+     * @param rows     the number of rows of the band.
+     * @return the band, as an off-heap image.
+     * @throws IOException if the file is not a raster file or the band is not inside it.
+     */
+    public static Image openRasterRows(String filename, int firstRow, int rows) throws IOException {
+        return RasterFile.mapRows(new File(filename), firstRow, rows);
+    }
+
+    /**
+     * Reads an image from the given stream, e.g. an uploaded file.
+     *
+     * @param input the stream of an encoded image.
+     * @throws IOException if the stream cannot be read or is not a supported image.
+     */
+    public Image(InputStream input) throws IOException {
+        this(ImageIO.read(input));
+    }
+
+    private Image(BufferedImage im) throws IOException {
+        if (im == null) {
+            throw new IOException("Unsupported image format");
+        }
         width = im.getWidth();
         height = im.getHeight();
+        raster = null;
 
 
         pixelArray = new Color[height][width];
@@ -34,6 +105,21 @@ public class Image {
 
     public Image(Color[][] pixelArray, int width, int height) {
         this.pixelArray = pixelArray;
+        this.raster = null;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Constructs an off-heap image.
+     *
+     * @param raster the packed ARGB pixels, row after row, e.g. in a direct or memory-mapped buffer.
+     * @param width  the width of the image.
+     * @param height the height of the image.
+     */
+    Image(IntBuffer raster, int width, int height) {
+        this.pixelArray = null;
+        this.raster = raster;
         this.width = width;
         this.height = height;
     }
@@ -46,9 +132,58 @@ public class Image {
         return height;
     }
 
+    /**
+     * Retrieves a pixel. Off-heap images allocate the Color on every call, so loops over the
+     * pixels use getRGB instead.
+     *
+     * @param x the row of the pixel.
+     * @param y the column of the pixel.
+     * @return the color of the pixel.
+     */
     public Color getPixel(int x, int y) {
+        if (raster != null) {
+            return new Color(raster.get(x * width + y));
+        }
         return pixelArray[x][y];
     }
+
+    /**
+     * Retrieves a pixel as a packed ARGB value, without allocating a Color for off-heap images.
+     *
+     * @param x the row of the pixel.
+     * @param y the column of the pixel.
+     * @return the packed ARGB value of the pixel.
+     */
+    public int getRGB(int x, int y) {
+        if (raster != null) {
+            return raster.get(x * width + y);
+        }
+        return pixelArray[x][y].getRGB();
+    }
+
+    /**
+     * @return true if the pixels of this image are kept outside the Java heap.
+     */
+    public boolean isOffHeap() {
+        return raster != null;
+    }
+
+    /**
+     * Writes the pixels of this image to a raw raster file (see RasterFile), which openRasterRows maps.
+     *
+     * @param filename the path of the raster file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void saveRaster(String filename) throws IOException {
+        RasterFile.write(this, new File(filename));
+    }
+
+    /**
+     * @return the packed ARGB pixels of an off-heap image, row after row, or null for an on-heap image.
+     */
+    IntBuffer getRaster() {
+        return raster;
+    }
     /**
      * Overrides the equals method to compare this Image object with another object.
      *
@@ -66,7 +201,7 @@ public class Image {
         }
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                if (!pixelArray[i][j].equals(otherImage.getPixel(i, j))) {
+                if (getRGB(i, j) != otherImage.getRGB(i, j)) {
                     return false;
                 }
             }
@@ -87,7 +222,7 @@ public class Image {
 
         for (int i = 0; i < height; i++) {
             for (int j = 0; j < width; j++) {
-                result = ANOTHERPRIME * result + pixelArray[i][j].hashCode();
+                result = ANOTHERPRIME * result + getRGB(i, j);
             }
         }
 
@@ -97,13 +232,13 @@ public class Image {
 
 
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
+        // Initialize BufferedImage of the size of the image.
+        BufferedImage bufferedImage = new BufferedImage(width, height,
                 BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
+        // Set each pixel of the BufferedImage to the color of the image.
+        for (int x = 0; x < height; x++) {
+            for (int y = 0; y < width; y++) {
+                bufferedImage.setRGB(y, x, getRGB(x, y));
             }
         }
         File outputfile = new File(fileName+".jpeg");
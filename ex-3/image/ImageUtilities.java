@@ -1,8 +1,10 @@
 package image;
 
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 /**
  * Utility class for image-related operations. the methods are all static
@@ -27,27 +29,50 @@ public class ImageUtilities {
      */
     public static final int WHITECOLOR = 255;
 
+    /**
+     * Below this difference between the darkest and brightest pixel an image is considered flat
+     * when calculating its shape mask.
+     */
+    private static final double MIN_SHAPE_CONTRAST = 0.1;
+
+    /**
+     * Threshold used for the shape mask of flat images.
+     */
+    private static final double HALF_BRIGHTNESS = 0.5;
+
+    /**
+     * The packed ARGB value of an opaque white pixel.
+     */
+    private static final int WHITE_RGB = 0xFFFFFFFF;
+
+    private static final int MEGABYTE_SHIFT = 20;
+
     /**
      * Pads the given image with white color to make its dimensions powers of 2.
      * If the original image dimensions are already powers of 2, no padding is applied.
      *
      * @param image the original image to be padded.
      * @return the padded image with dimensions as powers of 2.
+     * @throws IOException if the image is off-heap and the padded image would not fit in a single buffer.
      */
-    static public Image padImageWhite(Image image){
+    static public Image padImageWhite(Image image) throws IOException {
         int height = image.getHeight();
         int width = image.getWidth();
         int heightPow2 = findPow2(height);
         int widthPow2 = findPow2(width);
         int diffHeight = (heightPow2 - height) / 2;
         int diffWidth = (widthPow2 - width) / 2;
+        if (image.isOffHeap()) {
+            return padOffHeap(image, widthPow2, heightPow2, diffWidth, diffHeight);
+        }
         Color[][] imagePadded = new Color[heightPow2][widthPow2];
+        Color white = new Color(WHITECOLOR, WHITECOLOR, WHITECOLOR);
 
         for (int i = 0; i < heightPow2; i++) {
             for (int j = 0; j < widthPow2; j++) {
                 if (i < diffHeight || i >= height + diffHeight ||
                         j < diffWidth || j >= width + diffWidth) {
-                    imagePadded[i][j] = new Color(WHITECOLOR, WHITECOLOR, WHITECOLOR);
+                    imagePadded[i][j] = white;
                     continue;
                 }
                 imagePadded[i][j] = image.getPixel(i - diffHeight, j - diffWidth);
@@ -56,6 +81,38 @@ public class ImageUtilities {
         return new Image(imagePadded, widthPow2, heightPow2);
     }
 
+    /**
+     * Pads an off-heap image into a new off-heap image, copying whole rows of packed pixels.
+     *
+     * @param image      the off-heap image to pad.
+     * @param widthPow2  the padded width.
+     * @param heightPow2 the padded height.
+     * @param diffWidth  the number of white columns left of the image.
+     * @param diffHeight the number of white rows above the image.
+     * @return the padded off-heap image.
+     * @throws IOException if the padded image would not fit in a single buffer.
+     */
+    private static Image padOffHeap(Image image, int widthPow2, int heightPow2, int diffWidth, int diffHeight)
+            throws IOException {
+        long bytes = (long) widthPow2 * heightPow2 * Integer.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Image too large to pad off-heap: padded to %dx%d it takes %d MB, "
+                    + "and a buffer holds less than 2 GB", widthPow2, heightPow2, bytes >> MEGABYTE_SHIFT));
+        }
+        IntBuffer padded = ByteBuffer.allocateDirect((int) bytes).asIntBuffer();
+        int[] whiteRow = new int[widthPow2];
+        Arrays.fill(whiteRow, WHITE_RGB);
+        IntBuffer source = image.getRaster();
+        for (int i = 0; i < heightPow2; i++) {
+            padded.put(i * widthPow2, whiteRow);
+            int sourceRow = i - diffHeight;
+            if (sourceRow >= 0 && sourceRow < image.getHeight()) {
+                padded.put(i * widthPow2 + diffWidth, source, sourceRow * image.getWidth(), image.getWidth());
+            }
+        }
+        return new Image(padded, widthPow2, heightPow2);
+    }
+
     /**
      * Finds the next power of 2 greater than or equal to the given size.
      *
@@ -70,34 +127,6 @@ public class ImageUtilities {
         return n;
     }
 
-    /**
-     * Splits the given image into sub-images based on the specified resolution.
-     * Each sub-image has a resolution of res x res pixels.
-     *
-     * @param image the original image to be split.
-     * @param res   the resolution for each sub-image.
-     * @return a list of lists containing the sub-images.
-     */
-    public static List<List<Image>> splitByResolution(Image image, int res){
-        List<List<Image>> lstOfLst = new ArrayList<>();
-        int sizeSubPct = image.getWidth() / res;
-        for (int i = 0; i < image.getHeight() / sizeSubPct; i++) {
-            List<Image> lstOfImages = new ArrayList<>();
-            for (int j = 0; j < res ; j++) {
-                Color[][] subPicture = new Color[sizeSubPct][sizeSubPct];
-                for (int k = 0; k < sizeSubPct; k++) {
-                    for (int l = 0; l < sizeSubPct; l++) {
-                        subPicture[k][l] = image.getPixel(i * sizeSubPct + k, j * sizeSubPct + l);
-                    }
-                }
-                lstOfImages.add(new Image(subPicture, image.getWidth() / res, image.getWidth() / res));
-            }
-            lstOfLst.add(lstOfImages);
-        }
-        return lstOfLst;
-    }
-
-
     /**
      * Calculates the brightness percentage of the given image.
      * The brightness percentage represents the average brightness of all pixels in the image.
@@ -107,20 +136,125 @@ public class ImageUtilities {
      */
     public static double calculateBrightnessPct(Image image){
         double brightness = 0.0;
-        Color color;
-        double greyPixel;
         double normalizedGreyPixel;
         for (int i = 0; i < image.getHeight(); i++) {
             for (int j = 0; j < image.getWidth(); j++) {
-                color = image.getPixel(i, j);
-                greyPixel = color.getRed() * RED_RATIO + color.getGreen() * GREEN_RATIO
-                        + color.getBlue() * BLUE_RATIO;
-                normalizedGreyPixel = greyPixel / (image.getHeight() * image.getWidth() * 255);
+                normalizedGreyPixel = greyPixel(image.getRGB(i, j)) / (image.getHeight() * image.getWidth());
                 brightness += normalizedGreyPixel;
             }
         }
         return brightness;
     }
 
+    /**
+     * Calculates the grey value of a single pixel, normalized to the range [0, 1].
+     *
+     * @param color the color of the pixel.
+     * @return the normalized grey value of the pixel.
+     */
+    public static double greyPixel(Color color){
+        return (color.getRed() * RED_RATIO + color.getGreen() * GREEN_RATIO
+                + color.getBlue() * BLUE_RATIO) / WHITECOLOR;
+    }
+
+    /**
+     * Calculates the grey value of a single packed pixel, normalized to the range [0, 1].
+     *
+     * @param rgb the packed ARGB value of the pixel.
+     * @return the normalized grey value of the pixel.
+     */
+    public static double greyPixel(int rgb){
+        return (((rgb >> 16) & WHITECOLOR) * RED_RATIO + ((rgb >> 8) & WHITECOLOR) * GREEN_RATIO
+                + (rgb & WHITECOLOR) * BLUE_RATIO) / WHITECOLOR;
+    }
+
+    /**
+     * Calculates the average color of a rectangle of the given image, without copying it into a sub-image.
+     *
+     * @param image      the image.
+     * @param row        the top row of the rectangle.
+     * @param col        the left column of the rectangle.
+     * @param rectHeight the number of rows of the rectangle.
+     * @param rectWidth  the number of columns of the rectangle.
+     * @return the average color as a packed 0xRRGGBB value.
+     */
+    public static int calculateAverageColor(Image image, int row, int col, int rectHeight, int rectWidth){
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        int rgb;
+        for (int i = row; i < row + rectHeight; i++) {
+            for (int j = col; j < col + rectWidth; j++) {
+                rgb = image.getRGB(i, j);
+                red += (rgb >> 16) & WHITECOLOR;
+                green += (rgb >> 8) & WHITECOLOR;
+                blue += rgb & WHITECOLOR;
+            }
+        }
+        long pixels = (long) rectHeight * rectWidth;
+        return (int) (red / pixels) << 16 | (int) (green / pixels) << 8 | (int) (blue / pixels);
+    }
+
+    /**
+     * Quantizes each channel of the given color to the given number of evenly spaced levels,
+     * so that nearby colors collapse into one palette entry.
+     *
+     * @param rgb    the color as a packed 0xRRGGBB value.
+     * @param levels the number of levels per channel, at least 2.
+     * @return the quantized color as a packed 0xRRGGBB value.
+     */
+    public static int quantizeColor(int rgb, int levels){
+        int quantized = 0;
+        for (int shift = 16; shift >= 0; shift -= Byte.SIZE) {
+            int channel = (rgb >> shift) & WHITECOLOR;
+            int level = Math.round(channel * (levels - 1) / (float) WHITECOLOR);
+            quantized |= (level * WHITECOLOR / (levels - 1)) << shift;
+        }
+        return quantized;
+    }
+
+    /**
+     * Thresholds a rectangle of the given image into a side x side bit mask, packed row by row
+     * into longs (bit i of the mask is bit i % 64 of word i / 64), without copying it into a sub-image.
+     * A bit is set where the pixel is brighter than the average of the rectangle, so the mask
+     * follows the shape inside the rectangle rather than its overall brightness.
+     * Rectangles with almost no contrast are thresholded at half brightness instead, so flat
+     * areas become all-bright or all-dark masks.
+     * The rectangle is sampled with nearest neighbour when its size differs from side.
+     *
+     * @param image      the image.
+     * @param row        the top row of the rectangle.
+     * @param col        the left column of the rectangle.
+     * @param rectHeight the number of rows of the rectangle.
+     * @param rectWidth  the number of columns of the rectangle.
+     * @param side       the number of rows and columns of the mask.
+     * @param greys      a scratch buffer of at least side * side values.
+     * @param mask       the mask to fill, of side * side / 64 longs.
+     */
+    public static void calculateShapeMask(Image image, int row, int col, int rectHeight, int rectWidth,
+                                          int side, double[] greys, long[] mask){
+        int samples = side * side;
+        double sum = 0;
+        double min = 1;
+        double max = 0;
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                double grey = greyPixel(image.getRGB(row + y * rectHeight / side,
+                        col + x * rectWidth / side));
+                greys[y * side + x] = grey;
+                sum += grey;
+                min = Math.min(min, grey);
+                max = Math.max(max, grey);
+            }
+        }
+        double threshold = max - min < MIN_SHAPE_CONTRAST ? HALF_BRIGHTNESS : sum / samples;
+        Arrays.fill(mask, 0);
+        for (int i = 0; i < samples; i++) {
+            if (greys[i] >= threshold) {
+                mask[i / Long.SIZE] |= 1L << (i % Long.SIZE);
+            }
+        }
+    }
+
 
 }
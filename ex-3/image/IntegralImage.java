@@ -0,0 +1,97 @@
+package image;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
+/**
+ * A summed-area table of the grey values of an image.
+ * After a single pass over the pixels, the average brightness of any rectangle of the
+ * image is computed in constant time, which replaces splitting the image into sub-images
+ * and summing every pixel of every sub-image again for each resolution.
+ */
+public class IntegralImage {
+    private final int width;
+    private final int height;
+    /**
+     * the table holds (1 << chunkShift) rows of width + 1 sums per chunk
+     */
+    private final int chunkShift;
+    private final int chunkMask;
+    /**
+     * sums[i >> chunkShift].get(((i & chunkMask) * (width + 1)) + j) is the sum of the grey values of the
+     * pixels above row i and left of column j
+     */
+    private final DoubleBuffer[] sums;
+
+    /**
+     * Builds the summed-area table of the given image.
+     * The table of an off-heap image is kept off-heap too (see OffHeapTables), in chunks of rows.
+     *
+     * @param image the image to sum.
+     */
+    public IntegralImage(Image image) {
+        width = image.getWidth();
+        height = image.getHeight();
+        long rowBytes = (long) (width + 1) * Double.BYTES;
+        // the most rows, as a power of 2, whose sums fit in a table
+        chunkShift = Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(OffHeapTables.MAX_TABLE_BYTES / rowBytes));
+        chunkMask = (1 << chunkShift) - 1;
+        int chunks = (height >> chunkShift) + 1;
+        long[] chunkBytes = new long[chunks];
+        for (int k = 0; k < chunks; k++) {
+            chunkBytes[k] = Math.min(1L << chunkShift, height + 1 - ((long) k << chunkShift)) * rowBytes;
+        }
+        sums = new DoubleBuffer[chunks];
+        ByteBuffer[] tables = image.isOffHeap() ? OffHeapTables.allocate(chunkBytes) : null;
+        for (int k = 0; k < chunks; k++) {
+            sums[k] = tables != null ? tables[k].asDoubleBuffer()
+                    : DoubleBuffer.wrap(new double[(int) (chunkBytes[k] / Double.BYTES)]);
+        }
+        for (int i = 0; i < height; i++) {
+            double rowSum = 0;
+            for (int j = 0; j < width; j++) {
+                rowSum += ImageUtilities.greyPixel(image.getRGB(i, j));
+                put(i + 1, j + 1, get(i, j + 1) + rowSum);
+            }
+        }
+    }
+
+    /**
+     * @return the width of the summed image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the summed image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Calculates the brightness percentage of a rectangle of the image, the same value
+     * ImageUtilities.calculateBrightnessPct returns for the sub-image of the rectangle.
+     *
+     * @param row        the top row of the rectangle.
+     * @param col        the left column of the rectangle.
+     * @param rectHeight the number of rows of the rectangle.
+     * @param rectWidth  the number of columns of the rectangle.
+     * @return the average grey value of the rectangle.
+     */
+    public double calculateBrightnessPct(int row, int col, int rectHeight, int rectWidth) {
+        int bottom = row + rectHeight;
+        double sum = get(bottom, col + rectWidth) - get(bottom, col)
+                - get(row, col + rectWidth) + get(row, col);
+        return sum / ((double) rectHeight * rectWidth);
+    }
+
+    private double get(int i, int j) {
+        return sums[i >> chunkShift].get((i & chunkMask) * (width + 1) + j);
+    }
+
+    private void put(int i, int j, double sum) {
+        sums[i >> chunkShift].put((i & chunkMask) * (width + 1) + j, sum);
+    }
+}
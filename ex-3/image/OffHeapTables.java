@@ -0,0 +1,61 @@
+package image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Storage outside the Java heap for the tables derived from an off-heap image, such as its
+ * summed-area table, which are as large as the image or larger.
+ * The tables are kept in a temporary file that is memory-mapped, so like the raster of the image
+ * (see RasterFile) they are paged by the operating system rather than held on the heap. The file
+ * is deleted once mapped and its space is freed with the mappings. If no temporary file can be
+ * written, the tables are kept in direct buffers instead.
+ */
+class OffHeapTables {
+    /**
+     * The most bytes of a single table, so tables larger than a buffer are split into chunks.
+     */
+    static final int MAX_TABLE_BYTES = 1 << 30;
+
+    private static final String TABLES_PREFIX = "ascii-art-";
+    private static final String TABLES_SUFFIX = ".tables";
+
+    private OffHeapTables() {
+    }
+
+    /**
+     * Allocates off-heap tables of the given sizes.
+     *
+     * @param sizes the number of bytes of every table, each at most MAX_TABLE_BYTES.
+     * @return a zeroed buffer for every table, in the native byte order.
+     */
+    static ByteBuffer[] allocate(long... sizes) {
+        ByteBuffer[] tables = new ByteBuffer[sizes.length];
+        try {
+            Path path = Files.createTempFile(TABLES_PREFIX, TABLES_SUFFIX);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long offset = 0;
+                for (int i = 0; i < sizes.length; i++) {
+                    tables[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, sizes[i])
+                            .order(ByteOrder.nativeOrder());
+                    offset += sizes[i];
+                }
+            } finally {
+                // the mappings outlive the name of the file, except where a mapped file cannot be deleted
+                if (!path.toFile().delete()) {
+                    path.toFile().deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            for (int i = 0; i < sizes.length; i++) {
+                tables[i] = ByteBuffer.allocateDirect((int) sizes[i]).order(ByteOrder.nativeOrder());
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,174 @@
+package image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Raw raster files: a decoded image stored as a header (magic, width, height) followed by the
+ * packed ARGB pixels row after row, so it can be memory-mapped instead of decoded again.
+ * The raster of image.png is kept as image.png.raster and is used as long as it is newer
+ * than the image. Mapped rasters live in the page cache, outside the Java heap, and are
+ * shared by every process that maps the same file.
+ */
+class RasterFile {
+    private static final String EXTENSION = ".raster";
+    private static final String PARTIAL_EXTENSION = ".partial";
+    private static final int MAGIC = 0x52535452;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+    private RasterFile() {
+    }
+
+    /**
+     * Maps the raster of the given image file if it exists and is newer than the image.
+     *
+     * @param imageFile the image file.
+     * @return the mapped image, or null if there is no usable raster.
+     * @throws IOException if the raster exists but cannot be read.
+     */
+    static Image mapIfFresh(File imageFile) throws IOException {
+        File rasterFile = rasterOf(imageFile);
+        if (!rasterFile.isFile() || rasterFile.lastModified() < imageFile.lastModified()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(rasterFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC) {
+                return null;
+            }
+            int width = mapped.getInt();
+            int height = mapped.getInt();
+            if (channel.size() != HEADER_BYTES + (long) width * height * Integer.BYTES) {
+                return null;
+            }
+            return new Image(mapped.asIntBuffer(), width, height);
+        }
+    }
+
+    /**
+     * Stores the decoded image as the raster of the image file and maps it.
+     * If the raster cannot be written, e.g. in a read-only directory, the pixels are kept in a
+     * direct buffer instead, which is still off-heap but not reused by later opens.
+     *
+     * @param im        the decoded image.
+     * @param imageFile the image file.
+     * @return the off-heap image.
+     * @throws IOException if the image is too large for a single buffer.
+     */
+    static Image decodeOnce(BufferedImage im, File imageFile) throws IOException {
+        int width = im.getWidth();
+        int height = im.getHeight();
+        long bytes = HEADER_BYTES + (long) width * height * Integer.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Image too large for an off-heap raster");
+        }
+        File rasterFile = rasterOf(imageFile);
+        // written under a temporary name and renamed, so a raster that is visible is always complete
+        File partialFile = new File(rasterFile.getPath() + PARTIAL_EXTENSION);
+        try (FileChannel channel = FileChannel.open(partialFile.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            mapped.putInt(MAGIC).putInt(width).putInt(height);
+            IntBuffer raster = mapped.asIntBuffer();
+            copyPixels(im, raster);
+            mapped.force();
+            Files.move(partialFile.toPath(), rasterFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return new Image(raster, width, height);
+        } catch (IOException e) {
+            partialFile.delete();
+            IntBuffer raster = ByteBuffer.allocateDirect((int) bytes - HEADER_BYTES).asIntBuffer();
+            copyPixels(im, raster);
+            return new Image(raster, width, height);
+        }
+    }
+
+    private static void copyPixels(BufferedImage im, IntBuffer raster) {
+        int[] row = new int[im.getWidth()];
+        for (int i = 0; i < im.getHeight(); i++) {
+            im.getRGB(0, i, row.length, 1, row, 0, row.length);
+            raster.put(i * row.length, row);
+        }
+    }
+
+    /**
+     * Writes the given image as a raster file, e.g. to share it with other processes.
+     * The file is written under a temporary name and renamed, so it is never seen incomplete.
+     *
+     * @param image      the image to write.
+     * @param rasterFile the raster file.
+     * @throws IOException if the file cannot be written or the image is too large for a single buffer.
+     */
+    static void write(Image image, File rasterFile) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long bytes = HEADER_BYTES + (long) width * height * Integer.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Image too large for a raster file");
+        }
+        File partialFile = new File(rasterFile.getPath() + PARTIAL_EXTENSION);
+        try (FileChannel channel = FileChannel.open(partialFile.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            mapped.putInt(MAGIC).putInt(width).putInt(height);
+            IntBuffer raster = mapped.asIntBuffer();
+            if (image.isOffHeap()) {
+                raster.put(image.getRaster().duplicate().rewind());
+            } else {
+                for (int i = 0; i < height; i++) {
+                    for (int j = 0; j < width; j++) {
+                        raster.put(image.getRGB(i, j));
+                    }
+                }
+            }
+            mapped.force();
+        }
+        Files.move(partialFile.toPath(), rasterFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps a band of rows of a raster file, without mapping or reading the rest of the file.
+     *
+     * @param rasterFile the raster file.
+     * @param firstRow   the first row of the band.
+     * @param rows       the number of rows of the band.
+     * @return the band as an off-heap image.
+     * @throws IOException if the file is not a raster file or the band is not inside it.
+     */
+    static Image mapRows(File rasterFile, int firstRow, int rows) throws IOException {
+        try (FileChannel channel = FileChannel.open(rasterFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a raster file");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a raster file");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            if (firstRow < 0 || rows <= 0 || firstRow + rows > height) {
+                throw new IOException("Rows outside the raster");
+            }
+            long rowBytes = (long) width * Integer.BYTES;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + firstRow * rowBytes, rows * rowBytes);
+            return new Image(mapped.asIntBuffer(), width, rows);
+        }
+    }
+
+    private static File rasterOf(File imageFile) {
+        return new File(imageFile.getPath() + EXTENSION);
+    }
+}
@@ -33,6 +33,15 @@ public class CharConverter {
         return matrix;
     }
 
+    /**
+     * Renders a given character in the font of the converter to a square image whose dimension
+     * in pixels is specified. The pixels the character covers are opaque and all other pixels
+     * are fully transparent.
+     */
+    public static BufferedImage convertToImage(char c, int pixelsPerRow) {
+        return getBufferedImage(c, FONT_NAME, pixelsPerRow);
+    }
+
     private static BufferedImage getBufferedImage(char c, String fontName, int pixelsPerRow) {
         String charStr = Character.toString(c);
         Font font = new Font(fontName, Font.PLAIN, pixelsPerRow);
@@ -0,0 +1,151 @@
+package image_char_matching;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of characters, used as the key of compiled matchers.
+ * The 128 ASCII characters are kept as a bitmask in two longs and any other
+ * character in a sorted overflow array, so building, comparing and hashing a key
+ * of an ASCII charset does not touch the heap beyond the key itself.
+ */
+final class CharsetKey {
+    /**
+     * The empty charset.
+     */
+    static final CharsetKey EMPTY = new CharsetKey(0, 0, new char[0]);
+
+    private static final int ASCII_SIZE = 2 * Long.SIZE;
+    private static final int HASH_PRIME = 31;
+
+    /**
+     * bits of the characters 0 - 63
+     */
+    private final long low;
+    /**
+     * bits of the characters 64 - 127
+     */
+    private final long high;
+    /**
+     * sorted characters above 127
+     */
+    private final char[] overflow;
+
+    private CharsetKey(long low, long high, char[] overflow) {
+        this.low = low;
+        this.high = high;
+        this.overflow = overflow;
+    }
+
+    /**
+     * Creates the key of the given characters, duplicates are ignored.
+     *
+     * @param chars the characters of the charset.
+     * @return the key of the charset.
+     */
+    static CharsetKey of(char[] chars) {
+        CharsetKey key = EMPTY;
+        for (char c : chars) {
+            key = key.with(c);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the key of this charset with the given character added.
+     *
+     * @param c the character to add.
+     * @return the new key, or this key if it already contains c.
+     */
+    CharsetKey with(char c) {
+        if (contains(c)) {
+            return this;
+        }
+        if (c < Long.SIZE) {
+            return new CharsetKey(low | 1L << c, high, overflow);
+        }
+        if (c < ASCII_SIZE) {
+            return new CharsetKey(low, high | 1L << (c - Long.SIZE), overflow);
+        }
+        int insertion = -Arrays.binarySearch(overflow, c) - 1;
+        char[] added = new char[overflow.length + 1];
+        System.arraycopy(overflow, 0, added, 0, insertion);
+        added[insertion] = c;
+        System.arraycopy(overflow, insertion, added, insertion + 1, overflow.length - insertion);
+        return new CharsetKey(low, high, added);
+    }
+
+    /**
+     * Returns the key of this charset with the given character removed.
+     *
+     * @param c the character to remove.
+     * @return the new key, or this key if it does not contain c.
+     */
+    CharsetKey without(char c) {
+        if (!contains(c)) {
+            return this;
+        }
+        if (c < Long.SIZE) {
+            return new CharsetKey(low & ~(1L << c), high, overflow);
+        }
+        if (c < ASCII_SIZE) {
+            return new CharsetKey(low, high & ~(1L << (c - Long.SIZE)), overflow);
+        }
+        int index = Arrays.binarySearch(overflow, c);
+        char[] removed = new char[overflow.length - 1];
+        System.arraycopy(overflow, 0, removed, 0, index);
+        System.arraycopy(overflow, index + 1, removed, index, removed.length - index);
+        return new CharsetKey(low, high, removed);
+    }
+
+    /**
+     * @param c a character.
+     * @return true if the charset contains c; false otherwise.
+     */
+    boolean contains(char c) {
+        if (c < Long.SIZE) {
+            return (low & 1L << c) != 0;
+        }
+        if (c < ASCII_SIZE) {
+            return (high & 1L << (c - Long.SIZE)) != 0;
+        }
+        return Arrays.binarySearch(overflow, c) >= 0;
+    }
+
+    /**
+     * @return the number of characters in the charset.
+     */
+    int size() {
+        return Long.bitCount(low) + Long.bitCount(high) + overflow.length;
+    }
+
+    /**
+     * @return the characters of the charset, in ascending order.
+     */
+    char[] toSortedArray() {
+        char[] chars = new char[size()];
+        int i = 0;
+        for (char c = 0; c < ASCII_SIZE; c++) {
+            if (contains(c)) {
+                chars[i++] = c;
+            }
+        }
+        System.arraycopy(overflow, 0, chars, i, overflow.length);
+        return chars;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof CharsetKey)) {
+            return false;
+        }
+        CharsetKey otherKey = (CharsetKey) other;
+        return low == otherKey.low && high == otherKey.high && Arrays.equals(overflow, otherKey.overflow);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(low);
+        result = HASH_PRIME * result + Long.hashCode(high);
+        return HASH_PRIME * result + Arrays.hashCode(overflow);
+    }
+}
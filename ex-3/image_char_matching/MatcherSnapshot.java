@@ -0,0 +1,146 @@
+package image_char_matching;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, compiled matcher of a single charset.
+ * Holds the characters sorted by their normalized brightness together with their glyph masks,
+ * so it can be shared between matchers and threads and looked up without any allocation.
+ */
+final class MatcherSnapshot {
+    /**
+     * the characters of the charset in ascending ASCII order
+     */
+    private final char[] chars;
+    /**
+     * the distinct normalized brightness values, in ascending order
+     */
+    private final double[] brightness;
+    /**
+     * the character of every brightness value, the highest one if several share it
+     */
+    private final char[] brightnessChars;
+    /**
+     * the glyph masks of chars, in the same order
+     */
+    private final long[][] glyphMasks;
+
+    /**
+     * Compiles the snapshot of the given charset.
+     *
+     * @param charset the charset to compile.
+     */
+    MatcherSnapshot(CharsetKey charset) {
+        chars = charset.toSortedArray();
+        glyphMasks = new long[chars.length][];
+        double[] values = new double[chars.length];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < chars.length; i++) {
+            glyphMasks[i] = SubImgCharMatcher.retrieveOrFindGlyphMask(chars[i]);
+            values[i] = SubImgCharMatcher.retrieveOrFindCharVal(chars[i]) / SubImgCharMatcher.NUM_OF_BOOLEAN_VALUES;
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        // stable insertion sort by brightness keeps equal values in ascending char order
+        char[] sortedChars = chars.clone();
+        for (int i = 1; i < values.length; i++) {
+            double value = values[i];
+            char c = sortedChars[i];
+            int j = i - 1;
+            for (; j >= 0 && values[j] > value; j--) {
+                values[j + 1] = values[j];
+                sortedChars[j + 1] = sortedChars[j];
+            }
+            values[j + 1] = value;
+            sortedChars[j + 1] = c;
+        }
+        int distinct = 0;
+        for (int i = 0; i < values.length; i++) {
+            double normalized = max > min ? (values[i] - min) / (max - min) : 0;
+            if (distinct > 0 && values[distinct - 1] == normalized) {
+                // the highest char of equal values wins, as it did when they were put in a TreeMap in order
+                sortedChars[distinct - 1] = sortedChars[i];
+                continue;
+            }
+            values[distinct] = normalized;
+            sortedChars[distinct] = sortedChars[i];
+            distinct++;
+        }
+        brightness = Arrays.copyOf(values, distinct);
+        brightnessChars = Arrays.copyOf(sortedChars, distinct);
+    }
+
+    /**
+     * @return the characters of the charset in ascending ASCII order, not to be modified.
+     */
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Returns the character whose normalized brightness is closest to the given brightness,
+     * preferring the brighter character when two are equally close.
+     *
+     * @param value the brightness of a sub-image.
+     * @return the matching character.
+     */
+    char charByBrightness(double value) {
+        return brightnessChars[nearestIndex(value)];
+    }
+
+    /**
+     * Returns the normalized brightness of the character charByBrightness matches.
+     *
+     * @param value the brightness of a sub-image.
+     * @return the normalized brightness of the matching character.
+     */
+    double matchedBrightness(double value) {
+        return brightness[nearestIndex(value)];
+    }
+
+    private int nearestIndex(double value) {
+        int low = 0;
+        int high = brightness.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (brightness[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // low is now the index of the ceiling, high the index of the floor
+        if (low == brightness.length) {
+            return high;
+        }
+        if (high < 0 || brightness[low] - value <= value - brightness[high]) {
+            return low;
+        }
+        return high;
+    }
+
+    /**
+     * Returns the character whose glyph differs from the given mask in the fewest pixels,
+     * the lowest one if several are equally close.
+     *
+     * @param mask the bit mask of a sub-image.
+     * @return the matching character.
+     */
+    char charByShape(long[] mask) {
+        char best = chars[0];
+        int bestDistance = Integer.MAX_VALUE;
+        for (int c = 0; c < chars.length; c++) {
+            long[] glyph = glyphMasks[c];
+            int distance = 0;
+            for (int i = 0; i < glyph.length; i++) {
+                distance += Long.bitCount(glyph[i] ^ mask[i]);
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = chars[c];
+            }
+        }
+        return best;
+    }
+}
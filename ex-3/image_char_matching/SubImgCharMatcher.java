@@ -1,10 +1,14 @@
 package image_char_matching;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * SubImgCharMatcher class is responsible for matching an ASCII character
  * to give an image with a given brightness.
  * This class is used by the algorithm to match brightness with characters.
+ * The charset is kept as an immutable key, and every charset that is matched with is compiled
+ * once into an immutable snapshot that is cached, so going back to a previous charset is a cheap
+ * cache lookup. Adding or removing characters compiles nothing until the charset is next matched with.
  */
 public class SubImgCharMatcher {
 
@@ -24,37 +28,43 @@ public class SubImgCharMatcher {
      * space to put between chars in print
      */
     public static final char SPACE = ' ';
-
     /**
-     * static treemap to save all the letters we translated so far in order to
-     * avoid re-calculations
+     * maximal number of compiled charsets kept in the cache
      */
-    public static TreeMap<Character,Double> allBeforeNormal = new TreeMap<>();
+    private static final int MAX_CACHED_SNAPSHOTS = 128;
+
     /**
-     * static hash - translate between List of chars to their SubImgCharMatcher
-     * if we ever created SubImgCharMatcher with those specific chars before
+     * static map to save all the letters we translated so far in order to
+     * avoid re-calculations, shared by all matchers and safe to use from several threads
      */
-    static final HashMap<List<Character>,SubImgCharMatcher> subImgCharMatchers= new HashMap<>();
-
+    public static final Map<Character,Double> allBeforeNormal = new ConcurrentHashMap<>();
     /**
-     * List of characters that make up the set of characters for the algorithm to use.
+     * static map to save the glyph bit mask of all the letters we translated so far,
+     * each mask is CONVERTED_ROWS x CONVERTED_COLS bits packed into longs
      */
-    List<Character> chars = new ArrayList<>();
-
+    static final Map<Character,long[]> allGlyphMasks = new ConcurrentHashMap<>();
     /**
-     * max brightness of this specific Charmatcher
+     * static LRU cache - translate between a charset to its compiled snapshot
+     * if we compiled those specific chars before. Access must be synchronized on the map.
      */
-    private double maxBrightness;
-    private char brightestChar;
+    private static final LinkedHashMap<CharsetKey,MatcherSnapshot> snapshots =
+            new LinkedHashMap<>(MAX_CACHED_SNAPSHOTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CharsetKey, MatcherSnapshot> eldest) {
+            return size() > MAX_CACHED_SNAPSHOTS;
+        }
+    };
+
     /**
-     * min brightness of this specific Charmatcher
+     * The set of characters for the algorithm to use.
      */
-    private double minBrightness;
-    private char darkestChar;
+    private CharsetKey charset;
+
     /**
-     * tree with brightness and translation
+     * The compiled matcher of the charset, null until the charset is first matched with.
+     * Snapshots are immutable, so a matcher used from several threads at most compiles it twice.
      */
-    private TreeMap<Double,Character> normalizedTree;
+    private MatcherSnapshot snapshot;
 
     /**
      * Constructor that receives as a parameter an array of characters that will make up the set of characters for the algorithm to use.
@@ -62,70 +72,35 @@ public class SubImgCharMatcher {
      * @param charset an array of characters representing the set of characters for the algorithm to use.
      */
     public SubImgCharMatcher(char[] charset) {
-        Arrays.sort(charset);
-        for (char c:charset){
-            chars.add(c);
-        }
-        if (subImgCharMatchers.get(chars) != null){
-            normalizedTree = subImgCharMatchers.get(chars).normalizedTree;
-            return;
-        }
-        normalizedTree = new TreeMap<>();
-        boolean first = true;
-        for (char c : charset) {
-            double count = retrieveOrFindCharVal(c);
-            double normalized = count / NUM_OF_BOOLEAN_VALUES;
-            if (first){
-                first = false;
-                minBrightness = normalized;
-                maxBrightness = normalized;
-                brightestChar = c;
-                darkestChar = c;
-            }
-            if (normalized>maxBrightness){
-                maxBrightness=normalized;
-                brightestChar =c;
-            }
-            if (minBrightness>normalized){
-                minBrightness=normalized;
-                darkestChar = c;
-            }
-        }
-        for (char c:charset){
-            double diff = maxBrightness-minBrightness;
-            normalizedTree.put((allBeforeNormal.get(c)/NUM_OF_BOOLEAN_VALUES-minBrightness)/diff,c);
-        }
-
-
-
-
-//            if (normalizedTree.get(normalized)!=null){
-//                if (normalizedTree.get(normalized)!=c){
-//                    normalizedTree.put(normalized, c);
-//                }
-//                continue;
-//            }
-//            normalizedTree.put(normalized, c);
-
-        subImgCharMatchers.put(chars,this);
+        setCharset(CharsetKey.of(charset));
     }
+
     /**
      * Method to show characters.
      */
     public void showChars(){
-        for (char c : chars) {
+        for (char c : charset.toSortedArray()) {
             System.out.print(c);
             System.out.print(SPACE);
 
         }
     }
+    /**
+     * Retrieves the characters of the charset.
+     *
+     * @return the characters, in ascending order.
+     */
+    public char[] getChars(){
+        return charset.toSortedArray();
+    }
+
     /**
      * Method to check if there are no characters.
      *
      * @return true if there are no characters in the list; false otherwise.
      */
     public boolean hasNoChars(){
-        return chars.isEmpty();
+        return charset.size() == 0;
     }
 
 
@@ -136,7 +111,7 @@ public class SubImgCharMatcher {
      * @param c the character whose brightness value needs to be computed.
      * @return the brightness value of the character.
      */
-    private double getCharVal(char c){
+    private static double getCharVal(char c){
         boolean[][] converted = CharConverter.convertToBoolArray(c);
         double count = 0;
         //Check how much true, then normalize
@@ -152,24 +127,63 @@ public class SubImgCharMatcher {
     /**
      * Given a brightness value of a sub-image, the method will return the character from the set
      * that has the brightness closest in absolute value to the given brightness.
-     * If there are several characters from the set with the same brightness, the character with the lowest ASCII value will be returned among them.
+     * If there are several characters from the set with the same brightness, the character with the highest ASCII value will be returned among them.
      *
      * @param brightness the brightness value of the sub-image.
      * @return the character from the set that matches the given brightness.
      */
     public char getCharByImageBrightness(double brightness){
-        if (normalizedTree.ceilingKey(brightness)==null){
-            return normalizedTree.get(normalizedTree.floorKey(brightness));
-        } else if (normalizedTree.floorKey(brightness)==null) {
-            return normalizedTree.get(normalizedTree.ceilingKey(brightness));
+        return snapshot().charByBrightness(brightness);
+    }
+    /**
+     * Returns the normalized brightness of the character getCharByImageBrightness returns
+     * for the given brightness, e.g. to measure the error of the match.
+     *
+     * @param brightness the brightness value of the sub-image.
+     * @return the brightness of the matching character, on the same scale as the given brightness.
+     */
+    public double getMatchedBrightness(double brightness){
+        return snapshot().matchedBrightness(brightness);
+    }
+    /**
+     * Given the bit mask of a sub-image, the method will return the character from the set
+     * whose glyph differs from the mask in the fewest pixels (minimal Hamming distance).
+     * If there are several such characters, the one with the lowest ASCII value will be returned.
+     *
+     * @param mask the bit mask of the sub-image, CONVERTED_ROWS x CONVERTED_COLS bits packed into longs.
+     * @return the character from the set whose shape best matches the sub-image.
+     */
+    public char getCharByImageShape(long[] mask){
+        return snapshot().charByShape(mask);
+    }
+
+    /**
+     * Retrieves the glyph bit mask of a character if it exists in the 'allGlyphMasks' map,
+     * otherwise converts the character and stores its mask in the map.
+     * Bit y * CONVERTED_COLS + x of the mask is set where the glyph pixel (y, x) is background.
+     *
+     * @param c the character whose glyph mask needs to be retrieved or calculated.
+     * @return the glyph mask of the character.
+     */
+    static long[] retrieveOrFindGlyphMask(char c){
+        long[] mask = allGlyphMasks.get(c);
+        if (mask != null){
+            return mask;
         }
-        double ceil = normalizedTree.ceilingKey(brightness);
-        double floor = normalizedTree.floorKey(brightness);
-        if (ceil-brightness>brightness-floor){
-            return normalizedTree.get(floor);
+        boolean[][] converted = CharConverter.convertToBoolArray(c);
+        mask = new long[NUM_OF_BOOLEAN_VALUES / Long.SIZE];
+        for (int j = 0; j < CONVERTED_ROWS; j++) {
+            for (int k = 0; k < CONVERTED_COLS; k++) {
+                if (converted[j][k]) {
+                    int bit = j * CONVERTED_COLS + k;
+                    mask[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+                }
+            }
         }
-        return normalizedTree.get(ceil);
+        allGlyphMasks.put(c, mask);
+        return mask;
     }
+
     /**
      * Retrieves the brightness value of a character if it exists in the 'allBeforeNormal' map,
      * otherwise calculates the brightness value and stores it in the map.
@@ -177,16 +191,8 @@ public class SubImgCharMatcher {
      * @param c the character whose brightness value needs to be retrieved or calculated.
      * @return the brightness value of the character.
      */
-    private double retrieveOrFindCharVal(char c){
-        double count;
-        if (allBeforeNormal.get(c)!= null){
-            count = allBeforeNormal.get(c);
-        }
-        else {
-            count = getCharVal(c);
-            allBeforeNormal.put(c,count);
-        }
-        return count;
+    static double retrieveOrFindCharVal(char c){
+        return allBeforeNormal.computeIfAbsent(c, SubImgCharMatcher::getCharVal);
     }
     /**
      * Method that adds the character c to the character set.
@@ -194,110 +200,63 @@ public class SubImgCharMatcher {
      * @param c the character to be added to the character set.
      */
     public void addChar(char c){
-        //insertion to array
-
-        int insertionPoint = findInsertionPoint(chars, c);
-        if (chars.size()== insertionPoint||chars.get(insertionPoint)!=c){
-            chars.add(insertionPoint,c);
-        }
-        double count = retrieveOrFindCharVal(c);
-        allBeforeNormal.put(c,count);
-        double normalized = count/ NUM_OF_BOOLEAN_VALUES;
-//        double normalized = (count/ NUM_OF_BOOLEAN_VALUES -minBrightness)/(maxBrightness-minBrightness);
-        if ((normalized <=maxBrightness)&&(normalized >=minBrightness)){
-            normalizedTree.put((normalized-minBrightness)/(maxBrightness-minBrightness),c);
-            return;
-        }
-
-        if (subImgCharMatchers.get(chars) != null){
-            normalizedTree = subImgCharMatchers.get(chars).normalizedTree;
-            return;
-        }
-        normalizedTree.put(normalized,c);
-        newMaxOrMin(count/ NUM_OF_BOOLEAN_VALUES, count/ NUM_OF_BOOLEAN_VALUES > maxBrightness);
-        subImgCharMatchers.put(chars,this);
+        setCharset(charset.with(c));
     }
 
-
     /**
-     * binary search in array to find insertion point
+     * Method that removes the character c from the character set.
      *
-     * @param list the list of chars
-     * @param target the char we want to insert
+     * @param c the character to be removed from the character set.
      */
-    private static int findInsertionPoint(List<Character> list, char target) {
-        int low = 0;
-        int high = list.size() - 1;
-
-        while (low <= high) {
-            int mid = low + (high - low) / 2;
-            char midChar = list.get(mid);
-
-            if (midChar == target) {
-                return mid; // Insert at the current position if the character already exists
-            } else if (midChar < target) {
-                low = mid + 1;
-            } else {
-                high = mid - 1;
-            }
-        }
-        return low; // Insert after the last smaller element if not found
+    public void removeChar(char c){
+        setCharset(charset.without(c));
     }
+
     /**
-     * Adjusts the brightness values in the normalizedTree after adding or removing a character
-     * to maintain the proper order.
+     * Switches to the given charset. Its snapshot is retrieved or compiled when it is next matched with.
      *
-     * @param num the brightness value of the newly added or removed character.
-     * @param max flag indicating whether the new brightness value is maximum or not.
+     * @param newCharset the new set of characters.
      */
-    private void newMaxOrMin(double num,boolean max){
-        TreeMap<Double,Character> newNormalized = new TreeMap<>();
-        if (max){
-            for (char val: normalizedTree.values()){
-                Double normalizedNewMax = (allBeforeNormal.get(val)/NUM_OF_BOOLEAN_VALUES-minBrightness)/(num-minBrightness);
-                newNormalized.put(normalizedNewMax,val);
-            }
-            normalizedTree = newNormalized;
-            maxBrightness = num;
+    private void setCharset(CharsetKey newCharset){
+        if (newCharset.equals(charset)){
             return;
         }
-        for (char val: normalizedTree.values()){
-            Double normalizedNewMax = (allBeforeNormal.get(val)/NUM_OF_BOOLEAN_VALUES-num)/(maxBrightness-num);
-            newNormalized.put(normalizedNewMax,val);
-            minBrightness = num;
-        }
-        normalizedTree = newNormalized;
-
+        charset = newCharset;
+        snapshot = null;
     }
 
+    /**
+     * @return the snapshot of the charset, retrieved or compiled on the first call after the charset changed.
+     */
+    private MatcherSnapshot snapshot(){
+        MatcherSnapshot current = snapshot;
+        if (current == null){
+            current = retrieveOrCompileSnapshot(charset);
+            snapshot = current;
+        }
+        return current;
+    }
 
     /**
-     * Method that removes the character c from the character set.
+     * Retrieves the snapshot of a charset if it exists in the 'snapshots' cache,
+     * otherwise compiles the charset and stores its snapshot in the cache.
      *
-     * @param c the character to be removed from the character set.
+     * @param key the charset.
+     * @return the compiled snapshot of the charset.
      */
-    public void removeChar(char c){
-        if (findInsertionPoint(chars,c)>=chars.size()||chars.get(findInsertionPoint(chars,c))!=c){
-            return;
-        }
-        chars.remove(findInsertionPoint(chars,c));
-        double key = (allBeforeNormal.get(c)/ NUM_OF_BOOLEAN_VALUES -minBrightness)/(maxBrightness-minBrightness);
-        normalizedTree.remove(key);
-        if (key!=maxBrightness&&key!=minBrightness){
-            return;
-        }
-        if (subImgCharMatchers.get(chars)!=null){
-            normalizedTree = subImgCharMatchers.get(chars).normalizedTree;
+    private static MatcherSnapshot retrieveOrCompileSnapshot(CharsetKey key){
+        synchronized (snapshots) {
+            MatcherSnapshot cached = snapshots.get(key);
+            if (cached != null) {
+                return cached;
+            }
         }
-        if (key==maxBrightness){
-            double newMax = normalizedTree.lastKey();
-            newMaxOrMin(newMax,true);
-            return;
+        // compiled outside the lock, a concurrent compile of the same charset only wastes work
+        MatcherSnapshot compiled = new MatcherSnapshot(key);
+        synchronized (snapshots) {
+            MatcherSnapshot raced = snapshots.putIfAbsent(key, compiled);
+            return raced != null ? raced : compiled;
         }
-        double newMin = normalizedTree.firstKey();
-        newMaxOrMin(newMin,false);
-        subImgCharMatchers.put(chars,this);
-        //else
     }
 
 }
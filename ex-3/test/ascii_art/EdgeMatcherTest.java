@@ -0,0 +1,115 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.function.BiPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdgeMatcherTest {
+    private static final char[] CHARSET = " .:@".toCharArray();
+    private static final int SIDE = 32;
+    private static final int RES = 4;
+    private static final int TILES = SIDE / (SIDE / RES);
+    private static final String DIRECTIONS = "|-/\\";
+
+    @Test
+    void verticalEdgesAreDrawnAsBars() {
+        char[][] chars = match((row, col) -> col >= SIDE / 2);
+        for (int i = 0; i < TILES; i++) {
+            // the edge runs between the second and third tile columns
+            assertEquals('|', chars[i][1]);
+            assertEquals('|', chars[i][2]);
+            assertNoEdge(chars[i][0]);
+            assertNoEdge(chars[i][3]);
+        }
+    }
+
+    @Test
+    void horizontalEdgesAreDrawnAsDashes() {
+        char[][] chars = match((row, col) -> row >= SIDE / 2);
+        for (int j = 0; j < TILES; j++) {
+            assertEquals('-', chars[1][j]);
+            assertEquals('-', chars[2][j]);
+            assertNoEdge(chars[0][j]);
+            assertNoEdge(chars[3][j]);
+        }
+    }
+
+    @Test
+    void diagonalEdgesAreDrawnAlongTheirDirection() {
+        // bright below the anti-diagonal, which rises from the bottom left to the top right
+        assertDiagonal(match((row, col) -> row + col >= SIDE), '/', (i, j) -> i + j == TILES - 1);
+        // bright below the diagonal, which falls from the top left to the bottom right
+        assertDiagonal(match((row, col) -> row > col), '\\', (i, j) -> i == j);
+    }
+
+    @Test
+    void aViewportIsMatchedByBrightness() throws IOException {
+        Color[][] pixels = new Color[SIDE][SIDE];
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                pixels[row][col] = col >= SIDE / 2 ? Color.WHITE : Color.BLACK;
+            }
+        }
+        Parameters parameters = new Parameters(new Image(pixels, SIDE, SIDE), RES, new SubImgCharMatcher(CHARSET));
+        parameters.setMatchMode(MatchMode.EDGE);
+        assertEquals('|', parameters.getAsciiArt()[0][1]);
+        parameters.setViewport(0, 0, SIDE, SIDE);
+        char[][] edges = copy(parameters.getAsciiArt());
+        parameters.setMatchMode(MatchMode.BRIGHTNESS);
+        assertArrayEquals(parameters.getAsciiArt(), edges);
+        for (char[] row : edges) {
+            for (char c : row) {
+                assertNoEdge(c);
+            }
+        }
+    }
+
+    private static void assertDiagonal(char[][] chars, char direction, BiPredicate<Integer, Integer> onDiagonal) {
+        for (int i = 0; i < TILES; i++) {
+            for (int j = 0; j < TILES; j++) {
+                if (onDiagonal.test(i, j)) {
+                    assertEquals(direction, chars[i][j], "tile " + i + ", " + j);
+                } else {
+                    assertTrue(chars[i][j] == direction || DIRECTIONS.indexOf(chars[i][j]) < 0,
+                            "tile " + i + ", " + j);
+                }
+            }
+        }
+    }
+
+    private static void assertNoEdge(char c) {
+        assertTrue(DIRECTIONS.indexOf(c) < 0, "unexpected edge " + c);
+    }
+
+    /**
+     * Matches a black and white image, white where bright holds for the pixel row and column.
+     */
+    private static char[][] match(BiPredicate<Integer, Integer> bright) {
+        FloatBuffer greys = FloatBuffer.allocate(SIDE * SIDE);
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                greys.put(row * SIDE + col, bright.test(row, col) ? 1 : 0);
+            }
+        }
+        double[][] brightness = new double[TILES][TILES];
+        return new EdgeMatcher().match(greys, SIDE, Viewport.whole(SIDE, SIDE), RES, brightness,
+                new SubImgCharMatcher(CHARSET), new char[TILES][TILES]);
+    }
+
+    private static char[][] copy(char[][] chars) {
+        char[][] copied = new char[chars.length][];
+        for (int i = 0; i < chars.length; i++) {
+            copied[i] = chars[i].clone();
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,89 @@
+package ascii_art;
+
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ErrorDiffusionTest {
+    private static final char[] CHARSET = "0123456789abcdefghijklmnop @#".toCharArray();
+
+    @Test
+    void wavefrontMatchesTheSerialAlgorithm() {
+        SubImgCharMatcher charMatcher = new SubImgCharMatcher(CHARSET);
+        // wider than a block, so rows hand blocks over to the rows below them
+        double[][] brightness = randomGradient(new Random(1), 90, 300);
+        char[][] dithered = new ErrorDiffusion().dither(brightness, charMatcher, new char[90][300]);
+        assertArrayEquals(serialDither(brightness, charMatcher), dithered);
+    }
+
+    @Test
+    void reusedInstanceStartsEveryGridAfresh() {
+        SubImgCharMatcher charMatcher = new SubImgCharMatcher(CHARSET);
+        ErrorDiffusion errorDiffusion = new ErrorDiffusion();
+        double[][] large = randomGradient(new Random(2), 40, 150);
+        double[][] small = randomGradient(new Random(3), 7, 20);
+        errorDiffusion.dither(large, charMatcher, new char[40][150]);
+        assertArrayEquals(serialDither(small, charMatcher), errorDiffusion.dither(small, charMatcher, new char[7][20]));
+        assertArrayEquals(serialDither(large, charMatcher), errorDiffusion.dither(large, charMatcher, new char[40][150]));
+    }
+
+    @Test
+    void ditheringDiffersFromPlainMatching() {
+        SubImgCharMatcher charMatcher = new SubImgCharMatcher(CHARSET);
+        double[][] brightness = randomGradient(new Random(4), 20, 80);
+        char[][] plain = AsciiArtAlgorithm.matchBrightness(brightness, charMatcher, new char[20][80]);
+        assertNotEquals(0, countDifferences(plain, new ErrorDiffusion().dither(brightness, charMatcher,
+                new char[20][80])));
+    }
+
+    /**
+     * Floyd-Steinberg error diffusion one tile at a time, in row-major order.
+     */
+    private static char[][] serialDither(double[][] brightness, SubImgCharMatcher charMatcher) {
+        int rows = brightness.length;
+        int cols = brightness[0].length;
+        double[][] fromAbove = new double[rows + 1][cols];
+        char[][] chars = new char[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            double fromLeft = 0;
+            for (int j = 0; j < cols; j++) {
+                double value = brightness[i][j] + fromAbove[i][j] + fromLeft;
+                double error = value - charMatcher.getMatchedBrightness(value);
+                chars[i][j] = charMatcher.getCharByImageBrightness(value);
+                fromLeft = error * (7.0 / 16);
+                if (j > 0) {
+                    fromAbove[i + 1][j - 1] += error * (3.0 / 16);
+                }
+                fromAbove[i + 1][j] += error * (5.0 / 16);
+                if (j + 1 < cols) {
+                    fromAbove[i + 1][j + 1] += error * (1.0 / 16);
+                }
+            }
+        }
+        return chars;
+    }
+
+    private static double[][] randomGradient(Random random, int rows, int cols) {
+        double[][] brightness = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                brightness[i][j] = 0.8 * j / cols + 0.2 * random.nextDouble();
+            }
+        }
+        return brightness;
+    }
+
+    private static int countDifferences(char[][] first, char[][] second) {
+        int differences = 0;
+        for (int i = 0; i < first.length; i++) {
+            for (int j = 0; j < first[i].length; j++) {
+                differences += first[i][j] != second[i][j] ? 1 : 0;
+            }
+        }
+        return differences;
+    }
+}
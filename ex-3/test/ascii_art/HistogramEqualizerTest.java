@@ -0,0 +1,88 @@
+package ascii_art;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramEqualizerTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void evenlySpreadBrightnessIsKept() {
+        // one tile in the middle of every bin, so each bin holds the same fraction of the tiles
+        double[][] brightness = new double[16][16];
+        for (int k = 0; k < 256; k++) {
+            brightness[k / 16][k % 16] = (k + 0.5) / 256;
+        }
+        double[][] equalized = new HistogramEqualizer().equalize(brightness, new double[16][16]);
+        for (int i = 0; i < 16; i++) {
+            for (int j = 0; j < 16; j++) {
+                assertEquals(brightness[i][j], equalized[i][j], DELTA);
+            }
+        }
+    }
+
+    @Test
+    void lowContrastBrightnessSpreadsOverTheWholeRange() {
+        Random random = new Random(1);
+        double[][] brightness = new double[40][60];
+        for (double[] row : brightness) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = 0.4 + 0.1 * random.nextDouble();
+            }
+        }
+        double[][] equalized = new HistogramEqualizer().equalize(brightness, new double[40][60]);
+        double min = 1;
+        double max = 0;
+        for (double[] row : equalized) {
+            for (double value : row) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        assertTrue(min < 0.05, "darkest " + min);
+        assertTrue(max > 0.95, "brightest " + max);
+    }
+
+    @Test
+    void remappingIsMonotoneAndWithinRange() {
+        Random random = new Random(2);
+        double[][] brightness = new double[1][5000];
+        for (int j = 0; j < brightness[0].length; j++) {
+            // skewed towards dark, with the ends of the range included
+            brightness[0][j] = j < 2 ? j : Math.pow(random.nextDouble(), 3);
+        }
+        double[][] equalized = new HistogramEqualizer().equalize(brightness, new double[1][5000]);
+        for (int j = 0; j < brightness[0].length; j++) {
+            assertTrue(equalized[0][j] >= 0 && equalized[0][j] <= 1, "tile " + j);
+            for (int other = 0; other < j; other++) {
+                if (brightness[0][other] < brightness[0][j]) {
+                    assertTrue(equalized[0][other] <= equalized[0][j], "tiles " + other + " and " + j);
+                }
+            }
+        }
+    }
+
+    @Test
+    void uniformBrightnessStaysUniformAndTheBufferIsReused() {
+        HistogramEqualizer equalizer = new HistogramEqualizer();
+        double[][] brightness = new double[8][8];
+        for (double[] row : brightness) {
+            Arrays.fill(row, 0.3);
+        }
+        double[][] buffer = new double[8][8];
+        // a previous call must leave nothing behind
+        equalizer.equalize(new double[][]{{0, 1}, {0.5, 0.7}}, new double[2][2]);
+        assertSame(buffer, equalizer.equalize(brightness, buffer));
+        for (double[] row : buffer) {
+            for (double value : row) {
+                assertEquals(buffer[0][0], value, DELTA);
+            }
+        }
+    }
+}
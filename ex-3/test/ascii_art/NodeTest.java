@@ -0,0 +1,54 @@
+package ascii_art;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NodeTest {
+    @Test
+    void onlyNodesDownstreamOfAnInvalidatedInputAreRecomputed() {
+        AtomicInteger left = new AtomicInteger(1);
+        AtomicInteger right = new AtomicInteger(10);
+        AtomicInteger leftComputations = new AtomicInteger();
+        AtomicInteger sumComputations = new AtomicInteger();
+        Node<Integer> leftNode = new Node<>(() -> {
+            leftComputations.incrementAndGet();
+            return left.get();
+        });
+        Node<Integer> rightNode = new Node<>(right::get);
+        Node<Integer> sumNode = new Node<>(() -> {
+            sumComputations.incrementAndGet();
+            return leftNode.get() + rightNode.get();
+        }, leftNode, rightNode);
+
+        assertEquals(11, sumNode.get());
+        assertEquals(11, sumNode.get());
+        assertEquals(1, sumComputations.get());
+
+        right.set(20);
+        rightNode.invalidate();
+        assertEquals(21, sumNode.get());
+        assertEquals(2, sumComputations.get());
+        assertEquals(1, leftComputations.get());
+    }
+
+    @Test
+    void invalidatedNodesAreOnlyRecomputedWhenNeeded() {
+        AtomicInteger input = new AtomicInteger(1);
+        AtomicInteger computations = new AtomicInteger();
+        Node<Integer> inputNode = new Node<>(input::get);
+        Node<Integer> doubled = new Node<>(() -> {
+            computations.incrementAndGet();
+            return 2 * inputNode.get();
+        }, inputNode);
+        for (int i = 2; i <= 5; i++) {
+            input.set(i);
+            inputNode.invalidate();
+        }
+        assertEquals(0, computations.get());
+        assertEquals(10, doubled.get());
+        assertEquals(1, computations.get());
+    }
+}
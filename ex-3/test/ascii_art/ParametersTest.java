@@ -0,0 +1,182 @@
+package ascii_art;
+
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ParametersTest {
+    private static final int RES = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void aFailedLoadKeepsThePreviousImage() throws IOException {
+        Image image = blankImage(16, 8);
+        Parameters parameters = new Parameters(image, RES, new SubImgCharMatcher(Parameters.INIT_CHARS));
+        parameters.updateImage(notAnImage().toString());
+        assertSame(image, parameters.getImage());
+    }
+
+    @Test
+    void aReplacedLoadIsCancelledAndAFailedReplacementKeepsThePreviousImage() throws IOException {
+        Image image = blankImage(16, 8);
+        Parameters parameters = new Parameters(image, RES, new SubImgCharMatcher(Parameters.INIT_CHARS));
+        parameters.updateImage(imageFile("replaced.png", 32, 32).toString());
+        parameters.updateImage(notAnImage().toString());
+        assertSame(image, parameters.getImage());
+        // the next load replaces the image, and the first one never does
+        parameters.updateImage(imageFile("loaded.png", 64, 16).toString());
+        assertEquals(64, parameters.getImage().getWidth());
+        assertEquals(16, parameters.getImage().getHeight());
+        assertEquals(64, parameters.getPaddedImage().getWidth());
+    }
+
+    @Test
+    void aFailedLoadKeepsTheViewportAndALoadedImageClearsIt() throws IOException {
+        Parameters parameters = new Parameters(blankImage(16, 8), RES,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        // a viewport of 8x2 pixels has a single row of tiles, the whole image two
+        parameters.setViewport(0, 0, 8, 2);
+        assertEquals(1, parameters.getAsciiArt().length);
+        parameters.updateImage(notAnImage().toString());
+        assertEquals(1, parameters.getAsciiArt().length);
+        parameters.updateImage(imageFile("loaded.png", 16, 8).toString());
+        assertEquals(2, parameters.getAsciiArt().length);
+    }
+
+    @Test
+    void theResolutionIsFittedToANarrowerLoadedImage() throws IOException {
+        Parameters parameters = new Parameters(blankImage(16, 8), RES,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        parameters.resUp();
+        parameters.resUp();
+        assertEquals(16, parameters.getRes());
+        parameters.updateImage(imageFile("narrow.png", 4, 4).toString());
+        assertEquals(4, parameters.getAsciiArt()[0].length);
+        assertEquals(4, parameters.getRes());
+        // every tile is a pixel again, so the modes that read tiles from the pyramid work
+        parameters.setAdaptive(true);
+        assertEquals(4, parameters.getAsciiArt()[0].length);
+        parameters.setMatchMode(MatchMode.EDGE);
+        assertEquals(4, parameters.getAsciiArt()[0].length);
+    }
+
+    @Test
+    void theDerivedTablesAreReadyWithTheLoadedImage() throws IOException {
+        Parameters parameters = new Parameters(blankImage(16, 8), RES,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        parameters.updateImage(imageFile("loaded.png", 48, 20).toString());
+        assertEquals(64, parameters.getIntegralImage().getWidth());
+        assertEquals(32, parameters.getIntegralImage().getHeight());
+        assertEquals(32 / (64 / RES), parameters.getAsciiArt().length);
+    }
+
+    @Test
+    void theAsciiArtIsOnlyRecomputedAfterAnInputItDependsOnChanged() throws IOException {
+        Parameters parameters = new Parameters(blankImage(16, 8), RES,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        char[][] asciiArt = parameters.getAsciiArt();
+        // the colors do not feed the ascii art, so it is not recomputed and keeps its chars
+        parameters.setColorLevels(4);
+        asciiArt[0][0] = '?';
+        assertSame(asciiArt, parameters.getAsciiArt());
+        assertEquals('?', parameters.getAsciiArt()[0][0]);
+        // the charset does, so the chars are matched again
+        parameters.addChar('#');
+        assertNotEquals('?', parameters.getAsciiArt()[0][0]);
+    }
+
+    @Test
+    void aViewportOutsideTheImageIsRejectedAndThePreviousOneKept() throws IOException {
+        Parameters parameters = new Parameters(blankImage(16, 8), RES,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        // a viewport of 8x2 pixels has a single row of tiles, the whole image two
+        parameters.setViewport(4, 2, 8, 2);
+        assertEquals(1, parameters.getAsciiArt().length);
+        parameters.setViewport(-1, 0, 8, 8);
+        parameters.setViewport(0, -1, 8, 8);
+        parameters.setViewport(0, 0, 0, 8);
+        parameters.setViewport(0, 0, 8, 0);
+        parameters.setViewport(9, 0, 8, 8);
+        parameters.setViewport(0, 1, 8, 8);
+        assertEquals(1, parameters.getAsciiArt().length);
+        parameters.clearViewport();
+        assertEquals(2, parameters.getAsciiArt().length);
+    }
+
+    @Test
+    void aViewportWithTooManyTileRowsIsRejected() throws IOException {
+        // a viewport of the whole image has 3000 tile rows at a resolution of 2, and 6000 at 4
+        Parameters parameters = new Parameters(blankImage(4, 3000), 2,
+                new SubImgCharMatcher(Parameters.INIT_CHARS));
+        parameters.setViewport(0, 0, 4, 3000);
+        assertEquals(1500, parameters.getAsciiArt().length);
+        parameters.setViewport(0, 0, 2, 3000);
+        assertEquals(3000, parameters.getAsciiArt().length);
+        parameters.setViewport(0, 0, 1, 3000);
+        assertEquals(3000, parameters.getAsciiArt().length);
+        parameters.resUp();
+        assertEquals(2, parameters.getRes());
+        assertEquals(3000, parameters.getAsciiArt().length);
+        // without the viewport the resolution may double again
+        parameters.clearViewport();
+        parameters.resUp();
+        assertEquals(4, parameters.getRes());
+    }
+
+    @Test
+    void theTilesOfAViewportCoverItFromItsTopLeftCorner() {
+        Viewport viewport = new Viewport(3, 5, 10, 7);
+        int rows = 3;
+        int res = 2;
+        assertEquals(3, viewport.tileTop(0, rows));
+        int top = viewport.row();
+        for (int i = 0; i < rows; i++) {
+            assertEquals(top, viewport.tileTop(i, rows));
+            top += viewport.tileHeight(i, rows);
+        }
+        assertEquals(viewport.row() + viewport.height(), top);
+        assertEquals(6, viewport.tileTop(1, rows));
+        assertEquals(9, viewport.tileTop(2, rows));
+        int left = viewport.col();
+        for (int j = 0; j < res; j++) {
+            assertEquals(left, viewport.tileLeft(j, res));
+            left += viewport.tileWidth(j, res);
+        }
+        assertEquals(viewport.col() + viewport.width(), left);
+        assertEquals(8, viewport.tileLeft(1, res));
+    }
+
+    private Path notAnImage() throws IOException {
+        return Files.writeString(directory.resolve("not-an-image.png"), "not an image");
+    }
+
+    private Path imageFile(String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Path path = directory.resolve(name);
+        ImageIO.write(image, "png", path.toFile());
+        return path;
+    }
+
+    private static Image blankImage(int width, int height) {
+        Color[][] pixels = new Color[height][width];
+        for (Color[] row : pixels) {
+            Arrays.fill(row, Color.WHITE);
+        }
+        return new Image(pixels, width, height);
+    }
+}
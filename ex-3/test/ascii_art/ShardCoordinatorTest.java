@@ -0,0 +1,87 @@
+package ascii_art;
+
+import image.Image;
+import image.ImageUtilities;
+import image.IntegralImage;
+import image_char_matching.SubImgCharMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardCoordinatorTest {
+    private static final char[] CHARSET = "0123456789 #@.".toCharArray();
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    private static final int RES = 32;
+
+    @Test
+    void shardedRendersMatchTheSingleProcessRender() throws IOException {
+        Image padded = ImageUtilities.padImageWhite(randomImage(new Random(1)));
+        for (int workerCount : new int[]{2, 3}) {
+            try (ShardCoordinator shards = new ShardCoordinator(workerCount)) {
+                for (MatchMode matchMode : new MatchMode[]{MatchMode.BRIGHTNESS, MatchMode.SHAPE}) {
+                    char[][] sharded = shards.render(padded, RES, matchMode, CHARSET, new char[tileRows(padded)][RES]);
+                    assertArrayEquals(render(padded, matchMode), sharded, workerCount + " shards, " + matchMode);
+                }
+            }
+        }
+    }
+
+    @Test
+    void workersThatExitEarlyFailTheRender() throws IOException {
+        assertWorkersFail(List.of("sh", "-c", "exit 0"));
+    }
+
+    @Test
+    void workersThatAnswerShortFailTheRender() throws IOException {
+        // answers the number of tile rows of a band, then exits before the rest of the answer
+        assertWorkersFail(List.of("sh", "-c", "head -c 1 > /dev/null; printf '\\000\\000\\000\\001'"));
+    }
+
+    private static void assertWorkersFail(List<String> workerCommand) throws IOException {
+        Image padded = ImageUtilities.padImageWhite(randomImage(new Random(2)));
+        try (ShardCoordinator shards = new ShardCoordinator(2, workerCommand)) {
+            // the workers are replaced after a failure, and the replacements fail again
+            for (int i = 0; i < 2; i++) {
+                assertThrows(IOException.class, () -> shards.render(padded, RES, MatchMode.BRIGHTNESS, CHARSET,
+                        new char[tileRows(padded)][RES]));
+            }
+        }
+    }
+
+    private static char[][] render(Image padded, MatchMode matchMode) {
+        Viewport whole = Viewport.whole(padded.getWidth(), padded.getHeight());
+        SubImgCharMatcher charMatcher = new SubImgCharMatcher(CHARSET);
+        char[][] chars = new char[tileRows(padded)][RES];
+        if (matchMode == MatchMode.SHAPE) {
+            return AsciiArtAlgorithm.matchShapes(padded, whole, charMatcher, new RenderContext.ShapeBuffers(), chars);
+        }
+        double[][] brightness = AsciiArtAlgorithm.calculateTileBrightness(new IntegralImage(padded), whole,
+                new double[chars.length][RES]);
+        return AsciiArtAlgorithm.matchBrightness(brightness, charMatcher, chars);
+    }
+
+    private static int tileRows(Image padded) {
+        return Viewport.whole(padded.getWidth(), padded.getHeight()).tileRows(RES);
+    }
+
+    /**
+     * @return an image of noise over a diagonal gradient, so every band has different chars.
+     */
+    private static Image randomImage(Random random) {
+        Color[][] pixels = new Color[HEIGHT][WIDTH];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int grey = Math.min(255, (row + col) + random.nextInt(50));
+                pixels[row][col] = new Color(grey, grey, random.nextInt(256));
+            }
+        }
+        return new Image(pixels, WIDTH, HEIGHT);
+    }
+}
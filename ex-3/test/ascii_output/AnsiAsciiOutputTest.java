@@ -0,0 +1,59 @@
+package ascii_output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnsiAsciiOutputTest {
+    private static final String ESCAPE = "\u001b[";
+    private static final int FPS = 1000;
+    private static final int COLUMNS = 80;
+    private static final int LINES = 10;
+
+    private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    private final AnsiAsciiOutput output = new AnsiAsciiOutput(
+            new PrintStream(written, true, StandardCharsets.UTF_8), FPS, COLUMNS, LINES);
+
+    @Test
+    void onlyChangedCellsAreRewritten() {
+        char[][] chars = {{'a', 'b', 'c'}, {'d', 'e', 'f'}};
+        output.out(chars);
+        assertTrue(take().startsWith(ESCAPE + "2J" + ESCAPE + "1;1Ha b c " + ESCAPE + "2;1Hd e f "));
+        output.out(new char[][]{{'a', 'b', 'c'}, {'d', 'e', 'f'}});
+        assertEquals(ESCAPE + "3;1H" + ESCAPE + "J", take());
+        output.out(new char[][]{{'a', 'x', 'y'}, {'d', 'e', 'z'}});
+        assertEquals(ESCAPE + "1;3Hx y " + ESCAPE + "2;5Hz " + ESCAPE + "3;1H" + ESCAPE + "J", take());
+    }
+
+    @Test
+    void changedColorsAreRewrittenInColor() {
+        char[][] chars = {{'a', 'b'}};
+        output.out(chars, new int[][]{{0x000000, 0x000000}});
+        take();
+        output.out(chars, new int[][]{{0x000000, 0x102030}});
+        assertEquals(ESCAPE + "1;3H" + ESCAPE + "38;2;16;32;48mb " + ESCAPE + "0m" + ESCAPE + "2;1H" + ESCAPE + "J",
+                take());
+    }
+
+    @Test
+    void gridsThatLeaveNoLineForTheEnteredCommandAreWrittenWhole() {
+        output.out(new char[LINES - 2][1]);
+        assertTrue(take().startsWith(ESCAPE + "2J"));
+        output.out(new char[LINES - 1][1]);
+        assertFalse(take().contains(ESCAPE));
+        output.out(new char[1][COLUMNS / 2 + 1]);
+        assertFalse(take().contains(ESCAPE));
+    }
+
+    private String take() {
+        String frame = written.toString(StandardCharsets.UTF_8);
+        written.reset();
+        return frame;
+    }
+}
@@ -0,0 +1,135 @@
+package ascii_output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncAsciiOutputTest {
+    private static final String FONT = "Courier New";
+    private static final String CLOSING_TAG = "</html>";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void rendersThatArriveWhileWritingAreDroppedForTheLatest() throws InterruptedException {
+        BlockingOutput blocking = new BlockingOutput();
+        AsyncAsciiOutput output = new AsyncAsciiOutput(blocking);
+        char[][] chars = frame('0');
+        output.out(chars);
+        blocking.writing.await();
+        for (char c = '1'; c <= '9'; c++) {
+            chars[0][0] = c;
+            output.out(chars);
+        }
+        // the caller may reuse its array once out returns
+        chars[0][0] = 'x';
+        blocking.release.countDown();
+        output.close();
+        assertEquals(List.of('0', '9'), blocking.written);
+    }
+
+    @Test
+    void aFailedRenderDoesNotStopTheLaterOnes() throws InterruptedException {
+        FailingOutput failing = new FailingOutput();
+        AsyncAsciiOutput output = new AsyncAsciiOutput(failing);
+        output.out(frame('!'));
+        failing.failed.await();
+        output.out(frame('a'));
+        output.close();
+        assertEquals(List.of('a'), failing.written);
+    }
+
+    @Test
+    void theFinalRenderIsWrittenWholeAndReadersNeverSeeAPartialFile() throws Exception {
+        Path path = directory.resolve("out.html");
+        AsyncAsciiOutput output = new AsyncAsciiOutput(new HtmlAsciiOutput(path.toString(), FONT));
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> partialPages = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                try {
+                    String page = Files.readString(path);
+                    if (!page.strip().endsWith(CLOSING_TAG)) {
+                        partialPages.add(page);
+                    }
+                } catch (NoSuchFileException e) {
+                    // not written yet
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        reader.start();
+        char[][] chars = new char[60][200];
+        for (int i = 0; i < 200; i++) {
+            for (char[] row : chars) {
+                Arrays.fill(row, (char) ('a' + i % 26));
+            }
+            output.out(chars);
+        }
+        output.close();
+        done.set(true);
+        reader.join();
+        assertTrue(partialPages.isEmpty());
+        StringWriter expected = new StringWriter();
+        HtmlAsciiOutput.write(expected, FONT, chars);
+        assertEquals(expected.toString(), Files.readString(path));
+        assertFalse(Files.exists(directory.resolve("out.html.partial")));
+    }
+
+    private static char[][] frame(char c) {
+        return new char[][]{{c, c}};
+    }
+
+    /**
+     * Records the first char of every render, waiting for release while writing the first one.
+     */
+    private static class BlockingOutput implements AsciiOutput {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Character> written = new ArrayList<>();
+
+        @Override
+        public void out(char[][] chars) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.add(chars[0][0]);
+        }
+    }
+
+    /**
+     * Records the first char of every render, failing the renders of '!'.
+     */
+    private static class FailingOutput implements AsciiOutput {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final List<Character> written = new ArrayList<>();
+
+        @Override
+        public void out(char[][] chars) {
+            if (chars[0][0] == '!') {
+                failed.countDown();
+                throw new IllegalStateException("failed render");
+            }
+            written.add(chars[0][0]);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ascii_output;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryFrameReaderTest {
+    /**
+     * The offsets of the fields of the first frame of a file.
+     */
+    private static final int LENGTH = 4;
+    private static final int ROWS = 8;
+    private static final int COLS = 12;
+    private static final int CHARSET_SIZE = 17;
+    private static final int RUN = 23;
+    private static final int INDEX = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void framesRoundTripAsKeyAndDeltaFrames() throws IOException {
+        Random random = new Random(1);
+        List<char[][]> frames = new ArrayList<>();
+        char[][] frame = randomFrame(random, 30, 50, "ab @");
+        frames.add(frame);
+        // a few changed cells, then other dimensions, then runs longer than a varint byte holds
+        frame = copy(frame);
+        frame[3][7] = '#';
+        frame[29][49] = 'z';
+        frames.add(frame);
+        frames.add(randomFrame(random, 12, 400, "xyz"));
+        char[][] blank = new char[5][1000];
+        for (char[] row : blank) {
+            Arrays.fill(row, ' ');
+        }
+        frames.add(blank);
+        frames.add(copy(blank));
+        for (boolean delta : new boolean[]{false, true}) {
+            assertFramesEqual(frames, readAll(write(frames, delta)));
+        }
+    }
+
+    @Test
+    void charsetsOfMoreThan255CharsRoundTrip() throws IOException {
+        StringBuilder charset = new StringBuilder();
+        for (char c = '\u0100'; c < '\u0300'; c++) {
+            charset.append(c);
+        }
+        List<char[][]> frames = List.<char[][]>of(randomFrame(new Random(2), 20, 40, charset.toString()));
+        assertFramesEqual(frames, readAll(write(frames, true)));
+    }
+
+    @Test
+    void aFileWithoutFramesHasNoNextFrame() throws IOException {
+        try (BinaryFrameReader reader = new BinaryFrameReader(write(List.of(), true).toString())) {
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void framesAreAppendedToAnExistingFramesFile() throws IOException {
+        Random random = new Random(3);
+        List<char[][]> first = List.of(randomFrame(random, 4, 6, "ab"), randomFrame(random, 4, 6, "ab"));
+        List<char[][]> second = List.<char[][]>of(randomFrame(random, 4, 6, "cd"));
+        Path path = write(first, true);
+        BinaryAsciiOutput output = new BinaryAsciiOutput(path.toString(), true);
+        output.out(second.get(0));
+        List<char[][]> all = new ArrayList<>(first);
+        all.addAll(second);
+        assertFramesEqual(all, readAll(path));
+    }
+
+    @Test
+    void corruptFieldsAreRejected() throws IOException {
+        // a single key frame of one row of three 'a's: a run of 3 at RUN, of the char 0 at INDEX
+        byte[] valid = Files.readAllBytes(write(List.<char[][]>of(new char[][]{{'a', 'a', 'a'}}), false));
+        assertCorrupt(valid, bytes -> bytes[LENGTH] = -1);
+        assertCorrupt(valid, bytes -> bytes[ROWS + 3] = 0);
+        assertCorrupt(valid, bytes -> bytes[COLS] = Byte.MAX_VALUE);
+        assertCorrupt(valid, bytes -> bytes[CHARSET_SIZE] = Byte.MAX_VALUE);
+        assertCorrupt(valid, bytes -> bytes[RUN] = 4);
+        assertCorrupt(valid, bytes -> bytes[RUN] = 0);
+        assertCorrupt(valid, bytes -> bytes[RUN] = (byte) 0xFF);
+        assertCorrupt(valid, bytes -> bytes[INDEX] = 1);
+        assertCorrupt(Arrays.copyOf(valid, valid.length - 1), bytes -> { });
+    }
+
+    @Test
+    void anyChangedByteIsReadOrRejectedWithAnIOException() throws IOException {
+        Random random = new Random(4);
+        List<char[][]> frames = List.of(randomFrame(random, 3, 20, "abc"), randomFrame(random, 3, 20, "abd"));
+        byte[] valid = Files.readAllBytes(write(frames, true));
+        Path path = directory.resolve("changed.frames");
+        for (int i = Integer.BYTES; i < valid.length; i++) {
+            for (int value : new int[]{0, 1, 0x7F, 0x80, 0xFF}) {
+                byte[] changed = valid.clone();
+                changed[i] = (byte) value;
+                Files.write(path, changed);
+                try {
+                    readAll(path);
+                } catch (IOException e) {
+                    // rejected, as it should be if it is not a valid file anymore
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path path = directory.resolve("other.txt");
+        Files.writeString(path, "not a frames file");
+        assertThrows(IOException.class, () -> new BinaryFrameReader(path.toString()));
+    }
+
+    private void assertCorrupt(byte[] valid, Consumer<byte[]> corruption) throws IOException {
+        byte[] bytes = valid.clone();
+        corruption.accept(bytes);
+        Path path = Files.write(directory.resolve("corrupt.frames"), bytes);
+        assertThrows(IOException.class, () -> readAll(path));
+    }
+
+    private Path write(List<char[][]> frames, boolean delta) throws IOException {
+        Path path = Files.createTempFile(directory, "out", ".frames");
+        BinaryAsciiOutput output = new BinaryAsciiOutput(path.toString(), delta);
+        for (char[][] frame : frames) {
+            output.out(frame);
+        }
+        return path;
+    }
+
+    private static List<char[][]> readAll(Path path) throws IOException {
+        List<char[][]> frames = new ArrayList<>();
+        try (BinaryFrameReader reader = new BinaryFrameReader(path.toString())) {
+            while (reader.next()) {
+                frames.add(copy(reader.getFrame()));
+            }
+        }
+        return frames;
+    }
+
+    private static void assertFramesEqual(List<char[][]> expected, List<char[][]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i), "frame " + i);
+        }
+    }
+
+    /**
+     * @return a frame of runs of one to about four equal chars of the charset.
+     */
+    private static char[][] randomFrame(Random random, int rows, int cols, String charset) {
+        char[][] frame = new char[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                frame[i][j] = j > 0 && random.nextInt(4) > 0 ? frame[i][j - 1]
+                        : charset.charAt(random.nextInt(charset.length()));
+            }
+        }
+        return frame;
+    }
+
+    private static char[][] copy(char[][] frame) {
+        char[][] copied = new char[frame.length][];
+        for (int i = 0; i < frame.length; i++) {
+            copied[i] = frame[i].clone();
+        }
+        return copied;
+    }
+}
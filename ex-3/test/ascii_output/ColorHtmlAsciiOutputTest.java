@@ -0,0 +1,41 @@
+package ascii_output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColorHtmlAsciiOutputTest {
+    private static final String NEWLINE = System.lineSeparator();
+
+    @Test
+    void neighboursOfTheSameColorShareASpan() throws IOException {
+        char[][] chars = {{'a', 'b', '<'}, {'c', 'd', 'e'}};
+        int[][] colors = {{0xFF0000, 0xFF0000, 0x00FF00}, {0x00FF00, 0x0000FF, 0x0000FF}};
+        assertEquals("<span style=\"color:#FF0000\">ab</span>"
+                        + "<span style=\"color:#00FF00\">&lt;" + NEWLINE + "c</span>"
+                        + "<span style=\"color:#0000FF\">de" + NEWLINE + "</span>",
+                write(chars, colors));
+    }
+
+    @Test
+    void aSingleColorIsASingleSpan() throws IOException {
+        char[][] chars = {{'a', 'b'}, {'c', 'd'}};
+        int[][] colors = {{0x123456, 0x123456}, {0x123456, 0x123456}};
+        assertEquals("<span style=\"color:#123456\">ab" + NEWLINE + "cd" + NEWLINE + "</span>",
+                write(chars, colors));
+    }
+
+    @Test
+    void withoutColorsTheCharsArePlain() throws IOException {
+        assertEquals("ab" + NEWLINE, write(new char[][]{{'a', 'b'}}, null));
+    }
+
+    private static String write(char[][] chars, int[][] colors) throws IOException {
+        StringWriter writer = new StringWriter();
+        new ColorHtmlAsciiOutput("unused.html", "Courier New").writeChars(writer, chars, colors);
+        return writer.toString();
+    }
+}
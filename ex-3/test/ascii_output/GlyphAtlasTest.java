@@ -0,0 +1,101 @@
+package ascii_output;
+
+import image_char_matching.CharConverter;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GlyphAtlasTest {
+    private static final int GLYPH_SIZE = 16;
+    private static final int WHITE = 0xFFFFFF;
+    private static final int BACKGROUND = 0x123456;
+
+    @Test
+    void aGlyphCoversThePixelsOfItsCharInItsColor() {
+        GlyphAtlas atlas = new GlyphAtlas(GLYPH_SIZE);
+        int scanline = 40;
+        int top = 2;
+        int left = 3;
+        int[] pixels = new int[scanline * 20];
+        Arrays.fill(pixels, BACKGROUND);
+        // the alpha of the color is ignored
+        atlas.draw('#', 0xFFFF0000, pixels, top * scanline + left, scanline);
+        boolean[][] covered = coverage('#');
+        int coveredPixels = 0;
+        for (int y = 0; y < pixels.length / scanline; y++) {
+            for (int x = 0; x < scanline; x++) {
+                int pixel = pixels[y * scanline + x];
+                int glyphY = y - top;
+                int glyphX = x - left;
+                if (glyphY < 0 || glyphY >= GLYPH_SIZE || glyphX < 0 || glyphX >= GLYPH_SIZE) {
+                    assertEquals(BACKGROUND, pixel, "pixel " + x + ", " + y);
+                } else if (covered[glyphY][glyphX]) {
+                    assertEquals(0xFF0000, pixel, "pixel " + x + ", " + y);
+                    coveredPixels++;
+                } else {
+                    assertEquals(WHITE, pixel, "pixel " + x + ", " + y);
+                }
+            }
+        }
+        assertTrue(coveredPixels > 0 && coveredPixels < GLYPH_SIZE * GLYPH_SIZE);
+    }
+
+    @Test
+    void everyCharIsDrawnInItsColorInItsCell() {
+        char[][] chars = {{'#', '@'}, {'%', '#'}};
+        int[][] colors = {{0xFF0000, 0x00FF00}, {0x0000FF, 0x000000}};
+        BufferedImage image = new ImageAsciiOutput("unused.png", "png", GLYPH_SIZE).draw(chars, colors);
+        assertEquals(2 * GLYPH_SIZE, image.getWidth());
+        assertEquals(2 * GLYPH_SIZE, image.getHeight());
+        for (int row = 0; row < chars.length; row++) {
+            for (int col = 0; col < chars[row].length; col++) {
+                boolean[][] covered = coverage(chars[row][col]);
+                for (int y = 0; y < GLYPH_SIZE; y++) {
+                    for (int x = 0; x < GLYPH_SIZE; x++) {
+                        int pixel = image.getRGB(col * GLYPH_SIZE + x, row * GLYPH_SIZE + y) & WHITE;
+                        assertEquals(covered[y][x] ? colors[row][col] : WHITE, pixel,
+                                "cell " + row + ", " + col + " pixel " + x + ", " + y);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void theColoredGlyphsAreClearedWhenTheAtlasIsFull() {
+        GlyphAtlas atlas = new GlyphAtlas(GLYPH_SIZE);
+        int[] pixels = new int[GLYPH_SIZE * GLYPH_SIZE];
+        for (int rgb = 0; rgb < GlyphAtlas.MAX_CACHED_GLYPHS; rgb++) {
+            atlas.draw('#', rgb, pixels, 0, GLYPH_SIZE);
+        }
+        assertEquals(GlyphAtlas.MAX_CACHED_GLYPHS, atlas.cachedGlyphs());
+        // a glyph already kept is reused
+        atlas.draw('#', 0, pixels, 0, GLYPH_SIZE);
+        assertEquals(GlyphAtlas.MAX_CACHED_GLYPHS, atlas.cachedGlyphs());
+        atlas.draw('#', GlyphAtlas.MAX_CACHED_GLYPHS, pixels, 0, GLYPH_SIZE);
+        assertEquals(1, atlas.cachedGlyphs());
+        // the glyph built after the clear is still drawn correctly
+        boolean[][] covered = coverage('#');
+        for (int i = 0; i < pixels.length; i++) {
+            assertEquals(covered[i / GLYPH_SIZE][i % GLYPH_SIZE] ? GlyphAtlas.MAX_CACHED_GLYPHS : WHITE, pixels[i]);
+        }
+    }
+
+    /**
+     * @return whether every pixel of the glyph of the char is covered by the char, by its alpha.
+     */
+    private static boolean[][] coverage(char c) {
+        BufferedImage glyph = CharConverter.convertToImage(c, GLYPH_SIZE);
+        boolean[][] covered = new boolean[GLYPH_SIZE][GLYPH_SIZE];
+        for (int y = 0; y < GLYPH_SIZE; y++) {
+            for (int x = 0; x < GLYPH_SIZE; x++) {
+                covered[y][x] = glyph.getRGB(x, y) >>> 24 != 0;
+            }
+        }
+        return covered;
+    }
+}
@@ -0,0 +1,70 @@
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BrightnessPyramidTest {
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    @Test
+    void levelsGoUpToTheShorterSide() {
+        BrightnessPyramid pyramid = new BrightnessPyramid(randomImage(new Random(1)));
+        assertEquals(WIDTH, pyramid.getWidth());
+        assertEquals(HEIGHT, pyramid.getHeight());
+        // blocks of 1, 2, 4 and 8 pixels
+        assertEquals(4, pyramid.getLevels());
+    }
+
+    @Test
+    void levelZeroHoldsTheGreyOfEveryPixel() {
+        Image image = randomImage(new Random(2));
+        BrightnessPyramid pyramid = new BrightnessPyramid(image);
+        for (int i = 0; i < HEIGHT; i++) {
+            for (int j = 0; j < WIDTH; j++) {
+                float grey = (float) ImageUtilities.greyPixel(image.getRGB(i, j));
+                assertEquals(grey, pyramid.getGreys().get(i * WIDTH + j));
+                assertEquals(grey, pyramid.getMin(0, i, j));
+                assertEquals(grey, pyramid.getMax(0, i, j));
+            }
+        }
+    }
+
+    @Test
+    void everyBlockHoldsTheRangeOfItsPixels() {
+        Image image = randomImage(new Random(3));
+        BrightnessPyramid pyramid = new BrightnessPyramid(image);
+        for (int level = 1; level < pyramid.getLevels(); level++) {
+            int side = 1 << level;
+            for (int row = 0; row < HEIGHT / side; row++) {
+                for (int col = 0; col < WIDTH / side; col++) {
+                    float min = Float.MAX_VALUE;
+                    float max = -Float.MAX_VALUE;
+                    for (int i = row * side; i < (row + 1) * side; i++) {
+                        for (int j = col * side; j < (col + 1) * side; j++) {
+                            float grey = (float) ImageUtilities.greyPixel(image.getRGB(i, j));
+                            min = Math.min(min, grey);
+                            max = Math.max(max, grey);
+                        }
+                    }
+                    assertEquals(min, pyramid.getMin(level, row, col));
+                    assertEquals(max, pyramid.getMax(level, row, col));
+                }
+            }
+        }
+    }
+
+    private static Image randomImage(Random random) {
+        Color[][] pixels = new Color[HEIGHT][WIDTH];
+        for (int i = 0; i < HEIGHT; i++) {
+            for (int j = 0; j < WIDTH; j++) {
+                pixels[i][j] = new Color(random.nextInt(1 << 24));
+            }
+        }
+        return new Image(pixels, WIDTH, HEIGHT);
+    }
+}
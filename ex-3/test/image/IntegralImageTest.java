@@ -0,0 +1,85 @@
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IntegralImageTest {
+    private static final double TOLERANCE = 1e-9;
+    private static final int WIDTH = 12;
+    private static final int HEIGHT = 8;
+
+    @Test
+    void rectangleBrightnessMatchesTheSubImage() {
+        Image image = randomImage(new Random(1));
+        IntegralImage integral = new IntegralImage(image);
+        assertEquals(WIDTH, integral.getWidth());
+        assertEquals(HEIGHT, integral.getHeight());
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                for (int rectHeight = 1; row + rectHeight <= HEIGHT; rectHeight++) {
+                    for (int rectWidth = 1; col + rectWidth <= WIDTH; rectWidth++) {
+                        Image rectangle = subImage(image, row, col, rectHeight, rectWidth);
+                        assertEquals(ImageUtilities.calculateBrightnessPct(rectangle),
+                                integral.calculateBrightnessPct(row, col, rectHeight, rectWidth), TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void uniformImageHasItsGreyEverywhere() {
+        Color[][] pixels = new Color[HEIGHT][WIDTH];
+        for (Color[] row : pixels) {
+            Arrays.fill(row, Color.WHITE);
+        }
+        IntegralImage integral = new IntegralImage(new Image(pixels, WIDTH, HEIGHT));
+        assertEquals(1.0, integral.calculateBrightnessPct(0, 0, HEIGHT, WIDTH), TOLERANCE);
+        assertEquals(1.0, integral.calculateBrightnessPct(3, 5, 2, 4), TOLERANCE);
+    }
+
+    @Test
+    void offHeapImageGivesTheSameTable() {
+        Image image = randomImage(new Random(2));
+        IntBuffer raster = IntBuffer.allocate(WIDTH * HEIGHT);
+        for (int i = 0; i < HEIGHT; i++) {
+            for (int j = 0; j < WIDTH; j++) {
+                raster.put(i * WIDTH + j, image.getRGB(i, j));
+            }
+        }
+        IntegralImage onHeap = new IntegralImage(image);
+        IntegralImage offHeap = new IntegralImage(new Image(raster, WIDTH, HEIGHT));
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                assertEquals(onHeap.calculateBrightnessPct(0, 0, row + 1, col + 1),
+                        offHeap.calculateBrightnessPct(0, 0, row + 1, col + 1));
+            }
+        }
+    }
+
+    private static Image randomImage(Random random) {
+        Color[][] pixels = new Color[HEIGHT][WIDTH];
+        for (int i = 0; i < HEIGHT; i++) {
+            for (int j = 0; j < WIDTH; j++) {
+                pixels[i][j] = new Color(random.nextInt(1 << 24));
+            }
+        }
+        return new Image(pixels, WIDTH, HEIGHT);
+    }
+
+    private static Image subImage(Image image, int row, int col, int rectHeight, int rectWidth) {
+        Color[][] pixels = new Color[rectHeight][rectWidth];
+        for (int i = 0; i < rectHeight; i++) {
+            for (int j = 0; j < rectWidth; j++) {
+                pixels[i][j] = image.getPixel(row + i, col + j);
+            }
+        }
+        return new Image(pixels, rectWidth, rectHeight);
+    }
+}
@@ -0,0 +1,55 @@
+package image_char_matching;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CharsetKeyTest {
+    @Test
+    void keysOfTheSameCharsAreEqualWhateverTheOrder() {
+        CharsetKey key = CharsetKey.of(new char[]{'b', 'a', '\u00e9', '@'});
+        CharsetKey other = CharsetKey.of(new char[]{'\u00e9', '@', 'a', 'b', 'a'});
+        assertEquals(key, other);
+        assertEquals(key.hashCode(), other.hashCode());
+        assertEquals(4, key.size());
+    }
+
+    @Test
+    void keysOfDifferentCharsAreNotEqual() {
+        assertNotEquals(CharsetKey.of(new char[]{'a'}), CharsetKey.of(new char[]{'b'}));
+        assertNotEquals(CharsetKey.of(new char[]{'a'}), CharsetKey.of(new char[]{'a', '\u00e9'}));
+        assertNotEquals(CharsetKey.EMPTY, CharsetKey.of(new char[]{' '}));
+    }
+
+    @Test
+    void withAndWithoutCoverEveryRangeOfChars() {
+        // below 64, below 128 and above 127, where the key keeps its chars differently
+        for (char c : new char[]{' ', 'z', '\u00e9'}) {
+            CharsetKey key = CharsetKey.EMPTY.with(c);
+            assertTrue(key.contains(c));
+            assertEquals(1, key.size());
+            assertFalse(key.without(c).contains(c));
+            assertEquals(CharsetKey.EMPTY, key.without(c));
+        }
+    }
+
+    @Test
+    void addingAContainedCharOrRemovingAMissingOneKeepsTheKey() {
+        CharsetKey key = CharsetKey.of(new char[]{'a', '\u00e9'});
+        assertSame(key, key.with('a'));
+        assertSame(key, key.with('\u00e9'));
+        assertSame(key, key.without('b'));
+        assertSame(key, key.without('\u00fc'));
+    }
+
+    @Test
+    void sortedArrayListsTheCharsInAscendingOrder() {
+        CharsetKey key = CharsetKey.of(new char[]{'\u00fc', 'z', ' ', '\u00e9', 'A'});
+        assertArrayEquals(new char[]{' ', 'A', 'z', '\u00e9', '\u00fc'}, key.toSortedArray());
+    }
+}
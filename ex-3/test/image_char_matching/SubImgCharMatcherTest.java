@@ -0,0 +1,69 @@
+package image_char_matching;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubImgCharMatcherTest {
+    // private use chars with made up brightness, so no other test or font shares them
+    private static final char DARK = '\uE000';
+    private static final char MIDDLE_LOW = '\uE001';
+    private static final char MIDDLE_HIGH = '\uE002';
+    private static final char BRIGHT = '\uE003';
+
+    @BeforeAll
+    static void setBrightness() {
+        SubImgCharMatcher.allBeforeNormal.put(DARK, 16.0);
+        SubImgCharMatcher.allBeforeNormal.put(MIDDLE_LOW, 128.0);
+        SubImgCharMatcher.allBeforeNormal.put(MIDDLE_HIGH, 128.0);
+        SubImgCharMatcher.allBeforeNormal.put(BRIGHT, 240.0);
+    }
+
+    @Test
+    void theHighestCharWinsAmongEqualBrightness() {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[]{BRIGHT, MIDDLE_HIGH, DARK, MIDDLE_LOW});
+        assertEquals(DARK, matcher.getCharByImageBrightness(0));
+        assertEquals(MIDDLE_HIGH, matcher.getCharByImageBrightness(0.5));
+        assertEquals(MIDDLE_HIGH, matcher.getCharByImageBrightness(0.4));
+        assertEquals(BRIGHT, matcher.getCharByImageBrightness(1));
+        assertEquals(0.5, matcher.getMatchedBrightness(0.45), 1e-9);
+    }
+
+    @Test
+    void addingAndRemovingCharsChangesTheMatches() {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[]{DARK, BRIGHT});
+        assertEquals(BRIGHT, matcher.getCharByImageBrightness(0.6));
+        matcher.addChar(MIDDLE_LOW);
+        assertEquals(MIDDLE_LOW, matcher.getCharByImageBrightness(0.6));
+        matcher.addChar(MIDDLE_HIGH);
+        assertEquals(MIDDLE_HIGH, matcher.getCharByImageBrightness(0.6));
+        matcher.removeChar(MIDDLE_HIGH);
+        assertEquals(MIDDLE_LOW, matcher.getCharByImageBrightness(0.6));
+    }
+
+    @Test
+    void hasNoCharsOnlyWhenTheCharsetIsEmpty() {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[]{DARK});
+        assertFalse(matcher.hasNoChars());
+        matcher.removeChar(DARK);
+        assertTrue(matcher.hasNoChars());
+        matcher.addChar(BRIGHT);
+        assertFalse(matcher.hasNoChars());
+    }
+
+    @Test
+    void theMaskOfAGlyphMatchesItsChar() {
+        char[] chars = {'#', '@', 'O', '.', '-', '|', '/', 'x'};
+        SubImgCharMatcher matcher = new SubImgCharMatcher(chars);
+        for (char c : chars) {
+            long[] mask = SubImgCharMatcher.retrieveOrFindGlyphMask(c).clone();
+            assertEquals(c, matcher.getCharByImageShape(mask));
+            // a single differing pixel is still closest to the glyph
+            mask[0] ^= 1;
+            assertEquals(c, matcher.getCharByImageShape(mask));
+        }
+    }
+}